@@ -0,0 +1,60 @@
+package sim.bench;
+
+import sim.comms.EventDrivenConnection;
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageWriter;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * An {@link EventDrivenConnection} without anything on the other end, so that handlers can be measured on their own.
+ * Whatever a handler writes is passed to a callback right away, and the benchmark plays the other end by handing
+ * messages to the handler through {@link #deliver(Message)}.
+ */
+class BenchConnection implements EventDrivenConnection {
+
+    private final MessageWriter writer;
+    private Consumer<Message> onMessage = message -> {};
+
+    /**
+     * @param onWrite invoked with this connection and every message written to it
+     */
+    BenchConnection(BiConsumer<BenchConnection, Message> onWrite) {
+        this.writer = new MessageWriter() {
+            @Override
+            public void write(Message message) {
+                onWrite.accept(BenchConnection.this, message);
+            }
+
+            @Override
+            public void flush() {}
+        };
+    }
+
+    @Override
+    public void bind(Consumer<Message> onMessage, Runnable onClose) {
+        this.onMessage = onMessage;
+    }
+
+    /**
+     * Hands a message to the handler bound to this connection, as if the other end had sent it.
+     * @param message the message to hand over
+     */
+    void deliver(Message message) {
+        onMessage.accept(message);
+    }
+
+    @Override
+    public MessageWriter writer() {
+        return writer;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    @Override
+    public void close() {}
+}
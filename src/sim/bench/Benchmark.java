@@ -0,0 +1,55 @@
+package sim.bench;
+
+import java.util.Map;
+
+/**
+ * A single measurement run by the {@link BenchmarkRunner}: one piece of code with one combination of parameters. The
+ * runner calls {@link #run(int)} with the same amount of operations for every iteration and reports the average time per
+ * operation.
+ */
+interface Benchmark {
+
+    /**
+     * @return the name the results are reported under
+     */
+    String name();
+
+    /**
+     * @return the parameters of this instance, e.g. the queue depth or codec being measured
+     */
+    Map<String, String> params();
+
+    /**
+     * Prepares everything the measured code needs. Not measured.
+     * @throws Exception if the benchmark cannot be prepared
+     */
+    default void setUp() throws Exception {}
+
+    /**
+     * Performs the given amount of operations. Only this method is measured.
+     * @param operations how many operations to perform
+     * @return any value computed along the way, which the runner consumes so that the work cannot be optimized away
+     * @throws Exception if an operation fails
+     */
+    long run(int operations) throws Exception;
+
+    /**
+     * Releases whatever {@link #setUp()} acquired. Not measured.
+     */
+    default void tearDown() {}
+
+    /**
+     * @return the least amount of operations per call to {@link #run(int)}, which calibration starts from. Benchmarks
+     * with a high fixed cost per call raise it so that the fixed cost is shared by enough operations.
+     */
+    default int initialOperations() {
+        return 1;
+    }
+
+    /**
+     * @return how many threads perform the operations of a single call to {@link #run(int)}
+     */
+    default int threads() {
+        return 1;
+    }
+}
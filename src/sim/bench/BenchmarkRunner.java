@@ -0,0 +1,175 @@
+package sim.bench;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Benchmark}s the way a harness like JMH does, within a plain JVM: the amount of operations per
+ * iteration is first calibrated so that an iteration takes about the configured time, a few warmup iterations let the
+ * JIT compiler settle, and the measured iterations then give the average time per operation along with its error.
+ * Every result is consumed so that the measured work cannot be optimized away.
+ * <p>
+ * Results are written as JSON in the layout JMH uses for its own results, so that existing tools for tracking JMH
+ * results over time can read them.
+ */
+class BenchmarkRunner {
+
+    /**
+     * Quantile of the normal distribution for a two-sided 99.9% confidence interval.
+     */
+    private static final double Z_999 = 3.291;
+
+    private static volatile long sink;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+
+    /**
+     * The outcome of measuring a single benchmark.
+     * @param benchmark the benchmark that was measured
+     * @param operations how many operations each iteration performed
+     * @param nanosPerOperation the average time per operation of every measured iteration
+     */
+    record Result(Benchmark benchmark, int operations, double[] nanosPerOperation) {
+
+        double score() {
+            return Arrays.stream(nanosPerOperation).average().orElse(Double.NaN);
+        }
+
+        double error() {
+            int n = nanosPerOperation.length;
+            if (n < 2)
+                return Double.NaN;
+
+            double mean = score();
+            double variance = Arrays.stream(nanosPerOperation).map(x -> (x - mean) * (x - mean)).sum() / (n - 1);
+            return Z_999 * Math.sqrt(variance / n);
+        }
+    }
+
+    /**
+     * @param warmupIterations how many iterations to run before measuring
+     * @param measurementIterations how many iterations to measure
+     * @param iterationMillis about how long each iteration should take
+     */
+    BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = Math.max(1, measurementIterations);
+        this.iterationNanos = TimeUnit.MILLISECONDS.toNanos(iterationMillis);
+    }
+
+    /**
+     * Calibrates, warms up and measures the given benchmark.
+     * @param benchmark the benchmark to measure
+     * @return the measured result
+     * @throws Exception if the benchmark fails
+     */
+    Result run(Benchmark benchmark) throws Exception {
+        benchmark.setUp();
+        try {
+            int operations = calibrate(benchmark);
+            for (int i = 0; i < warmupIterations; i++)
+                sink += benchmark.run(operations);
+
+            double[] nanosPerOperation = new double[measurementIterations];
+            for (int i = 0; i < measurementIterations; i++) {
+                long start = System.nanoTime();
+                sink += benchmark.run(operations);
+                nanosPerOperation[i] = (double) (System.nanoTime() - start) / operations;
+            }
+
+            return new Result(benchmark, operations, nanosPerOperation);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    /**
+     * Doubles the amount of operations until a single call takes at least half an iteration, then scales it to a full
+     * iteration, without going below the benchmark's initial amount of operations.
+     */
+    private int calibrate(Benchmark benchmark) throws Exception {
+        int initialOperations = Math.max(1, benchmark.initialOperations());
+        int operations = initialOperations;
+        while (true) {
+            long start = System.nanoTime();
+            sink += benchmark.run(operations);
+            long elapsed = Math.max(1, System.nanoTime() - start);
+
+            if (elapsed >= iterationNanos / 2 || operations >= Integer.MAX_VALUE / 2) {
+                double scaled = Math.min(Integer.MAX_VALUE / 2, (double) operations * iterationNanos / elapsed);
+                return (int) Math.max(initialOperations, scaled);
+            }
+
+            operations *= 2;
+        }
+    }
+
+    /**
+     * @param result a measured result
+     * @return a single line describing the result for people
+     */
+    static String describe(Result result) {
+        double score = result.score();
+        return String.format(Locale.ROOT, "%-28s %-40s %14.1f +- %8.1f ns/op %16.0f ops/s",
+                result.benchmark().name(), result.benchmark().params(), score, result.error(),
+                TimeUnit.SECONDS.toNanos(1) / score);
+    }
+
+    /**
+     * @param results measured results
+     * @return the results as a JSON array in JMH's result layout, with throughput as a secondary metric
+     */
+    String toJson(List<Result> results) {
+        StringJoiner array = new StringJoiner(",\n", "[\n", "\n]\n");
+        for (Result result : results) {
+            Benchmark benchmark = result.benchmark();
+            double score = result.score();
+            double error = result.error();
+
+            StringJoiner params = new StringJoiner(", ", "{", "}");
+            for (Map.Entry<String, String> param : benchmark.params().entrySet())
+                params.add(quote(param.getKey()) + ": " + quote(param.getValue()));
+
+            StringJoiner raw = new StringJoiner(", ", "[[", "]]");
+            for (double value : result.nanosPerOperation())
+                raw.add(number(value));
+
+            array.add("  {\n"
+                    + "    \"benchmark\": " + quote(benchmark.getClass().getName() + "." + benchmark.name()) + ",\n"
+                    + "    \"mode\": \"avgt\",\n"
+                    + "    \"threads\": " + benchmark.threads() + ",\n"
+                    + "    \"warmupIterations\": " + warmupIterations + ",\n"
+                    + "    \"measurementIterations\": " + measurementIterations + ",\n"
+                    + "    \"operationsPerIteration\": " + result.operations() + ",\n"
+                    + "    \"params\": " + params + ",\n"
+                    + "    \"primaryMetric\": {\n"
+                    + "      \"score\": " + number(score) + ",\n"
+                    + "      \"scoreError\": " + number(error) + ",\n"
+                    + "      \"scoreConfidence\": [" + number(score - error) + ", " + number(score + error) + "],\n"
+                    + "      \"scoreUnit\": \"ns/op\",\n"
+                    + "      \"rawData\": " + raw + "\n"
+                    + "    },\n"
+                    + "    \"secondaryMetrics\": {\n"
+                    + "      \"throughput\": {\"score\": "
+                    + number(TimeUnit.SECONDS.toNanos(1) / score) + ", \"scoreUnit\": \"ops/s\"}\n"
+                    + "    }\n"
+                    + "  }");
+        }
+
+        return array.toString();
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String number(double value) {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.3f", value) : "\"NaN\"";
+    }
+}
@@ -0,0 +1,87 @@
+package sim.bench;
+
+import sim.comms.TRANSPORT;
+import sim.comms.wire.BinaryWireCodec;
+import sim.comms.wire.SerializationWireCodec;
+import sim.conductor.scheduling.EarliestCompletionStrategy;
+import sim.conductor.scheduling.HeuristicStrategy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The benchmark suite of the simulation. It measures the Conductor's scheduling round at several queue depths for each
+ * scheduling strategy, contention on the {@link sim.conductor.WorkerTracker}, a Client's
+ * {@link sim.client.TaskTracker}, encoding and decoding with each codec, and end-to-end throughput over loopback TCP
+ * and the in-memory transport. Each result is printed as it comes in, and all of them are written as JSON once the
+ * suite is done.
+ * <p>
+ * Usage: {@code java sim.bench.Benchmarks [results file] [name filter]}, where the results file defaults to
+ * {@code benchmark-results.json} and the filter is a regular expression matched against benchmark names. Iterations
+ * are configured with {@code sim.bench.warmup} (default 3), {@code sim.bench.iterations} (default 5) and
+ * {@code sim.bench.iterationMillis} (default 200).
+ * <p>
+ * Unless {@code sim.logLevel} or {@code sim.trace} is given, the components started by the benchmarks only log
+ * warnings, so that their connection and termination lines do not get mixed in with the results.
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws Exception {
+        // The log level is read once, when the first line is logged, so it has to be lowered before any component runs
+        if (System.getProperty("sim.logLevel") == null && !Boolean.getBoolean("sim.trace"))
+            System.setProperty("sim.logLevel", "warn");
+
+        Path output = Path.of(args.length > 0 ? args[0] : "benchmark-results.json");
+        Pattern filter = Pattern.compile(args.length > 1 ? args[1] : ".*");
+
+        BenchmarkRunner runner = new BenchmarkRunner(Integer.getInteger("sim.bench.warmup", 3),
+                Integer.getInteger("sim.bench.iterations", 5), Long.getLong("sim.bench.iterationMillis", 200));
+
+        List<BenchmarkRunner.Result> results = new ArrayList<>();
+        for (Benchmark benchmark : suite()) {
+            if (!filter.matcher(benchmark.name()).matches())
+                continue;
+
+            BenchmarkRunner.Result result = runner.run(benchmark);
+            System.err.println(BenchmarkRunner.describe(result));
+            results.add(result);
+        }
+
+        write(output, runner.toJson(results));
+        System.err.println("Results written to " + output.toAbsolutePath());
+        System.exit(0);
+    }
+
+    private static List<Benchmark> suite() {
+        List<Benchmark> suite = new ArrayList<>();
+        for (String strategy : List.of(HeuristicStrategy.NAME, EarliestCompletionStrategy.NAME)) {
+            for (int depth : new int[] {1, 64, 4096})
+                suite.add(new DispatchBenchmark(strategy, depth));
+        }
+
+        for (int threads : new int[] {1, 2, 4})
+            suite.add(new WorkerTrackerBenchmark(threads));
+
+        suite.add(new TaskTrackerBenchmark());
+        for (String codec : List.of(BinaryWireCodec.NAME, SerializationWireCodec.NAME)) {
+            for (boolean batch : new boolean[] {false, true}) {
+                suite.add(new CodecBenchmark(codec, batch, true));
+                suite.add(new CodecBenchmark(codec, batch, false));
+            }
+        }
+
+        // Leaves idle components behind, so it goes last
+        for (TRANSPORT transport : TRANSPORT.values())
+            suite.add(new LoopbackBenchmark(transport));
+
+        return suite;
+    }
+
+    private static void write(Path output, String json) throws IOException {
+        Files.writeString(output, json);
+    }
+}
@@ -0,0 +1,116 @@
+package sim.bench;
+
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageReader;
+import sim.comms.wire.MessageWriter;
+import sim.comms.wire.TaskBatch;
+import sim.comms.wire.WireCodec;
+import sim.comms.wire.WireCodecs;
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how fast a {@link WireCodec} encodes or decodes messages: single {@link Task}s, or {@link TaskBatch}es of
+ * {@value #BATCH_SIZE} tasks. Messages go to and come from memory, so only the codec itself is measured.
+ * <p>
+ * Every message is a distinct object, and a fresh stream is opened every {@value #MESSAGES_PER_STREAM} messages, so that
+ * Java serialization cannot get away with writing back-references to messages it has already written.
+ * <p>
+ * One operation is one message encoded, or one message decoded.
+ */
+class CodecBenchmark implements Benchmark {
+
+    private static final int MESSAGES_PER_STREAM = 1024;
+    private static final int BATCH_SIZE = 64;
+
+    private final String codecName;
+    private final boolean batch;
+    private final boolean encode;
+    private final List<Message> messages = new ArrayList<>(MESSAGES_PER_STREAM);
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private WireCodec codec;
+    private byte[] encoded;
+
+    /**
+     * @param codecName the name of the codec to measure
+     * @param batch true to measure batches of tasks, false to measure single tasks
+     * @param encode true to measure encoding, false to measure decoding
+     */
+    CodecBenchmark(String codecName, boolean batch, boolean encode) {
+        this.codecName = codecName;
+        this.batch = batch;
+        this.encode = encode;
+    }
+
+    @Override
+    public String name() {
+        return encode ? "encode" : "decode";
+    }
+
+    @Override
+    public Map<String, String> params() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("codec", codecName);
+        params.put("message", batch ? "batch" + BATCH_SIZE : "task");
+        return params;
+    }
+
+    @Override
+    public void setUp() throws IOException {
+        codec = WireCodecs.named(codecName);
+        int taskID = 0;
+        for (int i = 0; i < MESSAGES_PER_STREAM; i++) {
+            if (!batch) {
+                messages.add(new Task(1, taskID++, (i & 1) == 0 ? TASK_TYPE.A : TASK_TYPE.B));
+                continue;
+            }
+
+            List<Task> tasks = new ArrayList<>(BATCH_SIZE);
+            for (int j = 0; j < BATCH_SIZE; j++)
+                tasks.add(new Task(1, taskID++, (j & 1) == 0 ? TASK_TYPE.A : TASK_TYPE.B));
+
+            messages.add(new TaskBatch(tasks));
+        }
+
+        encode(MESSAGES_PER_STREAM);
+        encoded = bytes.toByteArray();
+    }
+
+    @Override
+    public long run(int operations) throws IOException {
+        long total = 0;
+        for (int done = 0; done < operations; done += MESSAGES_PER_STREAM) {
+            int count = Math.min(MESSAGES_PER_STREAM, operations - done);
+            total += encode ? encode(count) : decode(count);
+        }
+
+        return total;
+    }
+
+    private long encode(int count) throws IOException {
+        bytes.reset();
+        MessageWriter writer = codec.newWriter(bytes);
+        for (int i = 0; i < count; i++)
+            writer.write(messages.get(i));
+
+        writer.flush();
+        return bytes.size();
+    }
+
+    private long decode(int count) throws IOException {
+        MessageReader reader = codec.newReader(new ByteArrayInputStream(encoded));
+        long hash = 0;
+        for (int i = 0; i < count; i++)
+            hash += reader.read().hashCode();
+
+        return hash;
+    }
+}
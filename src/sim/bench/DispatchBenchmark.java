@@ -0,0 +1,123 @@
+package sim.bench;
+
+import sim.comms.wire.Handshake;
+import sim.comms.wire.Message;
+import sim.component.ComponentID;
+import sim.conductor.ClientRegistry;
+import sim.conductor.CreditController;
+import sim.conductor.WorkerTracker;
+import sim.conductor.comms.ClientHandler;
+import sim.conductor.comms.WorkerHandler;
+import sim.conductor.scheduling.Dispatcher;
+import sim.conductor.scheduling.SchedulingStrategies;
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+
+import static sim.component.COMPONENT_TYPE.CLIENT;
+import static sim.component.COMPONENT_TYPE.WORKER;
+
+/**
+ * Measures a full scheduling round of the Conductor: a worker returns a task, a new task is submitted and the
+ * {@link Dispatcher} assigns whatever it can with its {@link sim.conductor.scheduling.SchedulingStrategy}. The ready queue
+ * holds about {@code depth} waiting tasks throughout, and the workers sit on connections that hand every assigned task
+ * straight back, so only the Conductor's own work is measured. Completed tasks are routed to a single client through
+ * the same {@link ClientRegistry} the Conductor uses, and whatever it is sent is discarded.
+ * <p>
+ * One operation is one such round.
+ */
+class DispatchBenchmark implements Benchmark {
+
+    private static final int WORKERS_PER_TYPE = 4;
+    private static final TASK_TYPE[] TYPES = TASK_TYPE.values();
+
+    private final String strategy;
+    private final int depth;
+    private final Queue<Assignment> assigned = new ArrayDeque<>();
+    private final Random random = new Random(1);
+    private Dispatcher dispatcher;
+    private int nextTaskID;
+
+    /**
+     * A task, or work unit, written to a worker's connection and not yet returned.
+     */
+    private record Assignment(BenchConnection connection, Message unit) {}
+
+    /**
+     * @param strategy the name of the scheduling strategy to measure
+     * @param depth about how many tasks wait in the ready queue
+     */
+    DispatchBenchmark(String strategy, int depth) {
+        this.strategy = strategy;
+        this.depth = depth;
+    }
+
+    @Override
+    public String name() {
+        return "dispatch";
+    }
+
+    @Override
+    public Map<String, String> params() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("strategy", strategy);
+        params.put("depth", String.valueOf(depth));
+        return params;
+    }
+
+    @Override
+    public void setUp() {
+        WorkerTracker workerTracker = new WorkerTracker();
+        dispatcher = new Dispatcher(SchedulingStrategies.named(strategy), workerTracker, 1, 50);
+        workerTracker.register(dispatcher);
+
+        ClientRegistry clientRegistry = new ClientRegistry(new CreditController(Integer.MAX_VALUE, Integer.MAX_VALUE));
+        ClientHandler clientHandler = new ClientHandler(new ComponentID(CLIENT, 0), new BenchConnection((to, message) -> {}));
+        clientHandler.setDispatcher(dispatcher);
+        clientHandler.setClientRegistry(clientRegistry);
+        clientHandler.start();
+        clientRegistry.register(clientHandler);
+
+        int refID = 0;
+        for (TASK_TYPE type : TYPES) {
+            for (int i = 0; i < WORKERS_PER_TYPE; i++) {
+                BenchConnection connection = new BenchConnection((to, unit) -> assigned.add(new Assignment(to, unit)));
+                WorkerHandler workerHandler = new WorkerHandler(
+                        Handshake.worker(new ComponentID(WORKER, ++refID), type, 1, 0), connection);
+                workerHandler.setClientRegistry(clientRegistry);
+                workerTracker.add(workerHandler);
+                workerHandler.register(workerTracker);
+                workerHandler.start();
+            }
+        }
+
+        for (int i = 0; i < depth + WORKERS_PER_TYPE * TYPES.length; i++)
+            dispatcher.submit(nextTask());
+
+        dispatcher.dispatchAvailable();
+    }
+
+    @Override
+    public long run(int operations) {
+        long dispatched = 0;
+        for (int i = 0; i < operations; i++) {
+            Assignment returned = assigned.poll();
+            if (returned != null)
+                returned.connection().deliver(returned.unit());
+
+            dispatcher.submit(nextTask());
+            dispatched += dispatcher.dispatchAvailable();
+        }
+
+        return dispatched;
+    }
+
+    private Task nextTask() {
+        return new Task(0, nextTaskID++, TYPES[random.nextInt(TYPES.length)]);
+    }
+}
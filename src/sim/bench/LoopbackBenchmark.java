@@ -0,0 +1,123 @@
+package sim.bench;
+
+import sim.client.Client;
+import sim.comms.TRANSPORT;
+import sim.concurrent.Threads;
+import sim.conductor.Conductor;
+import sim.worker.Worker;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static sim.task.TASK_TYPE.A;
+import static sim.task.TASK_TYPE.B;
+
+/**
+ * Measures the whole system end to end: a Conductor, {@value #CLIENTS} Clients and {@value #WORKERS_PER_TYPE} Workers
+ * per type in this JVM, over loopback TCP or the in-memory transport. Workers complete their tasks instantly, so the
+ * result is the overhead of moving a task through the system.
+ * <p>
+ * Every call starts a fresh system, whose setup is part of the measurement but shared by many tasks. Conductors and
+ * Workers are never shut down and stay behind idle, which is why this benchmark runs last.
+ * <p>
+ * One operation is one task sent by a Client and returned to it.
+ */
+class LoopbackBenchmark implements Benchmark {
+
+    private static final int CLIENTS = 8;
+    private static final int WORKERS_PER_TYPE = 2;
+
+    private final TRANSPORT transport;
+    private final Map<String, String> previousProperties = new LinkedHashMap<>();
+
+    /**
+     * @param transport how the components connect to the Conductor
+     */
+    LoopbackBenchmark(TRANSPORT transport) {
+        this.transport = transport;
+    }
+
+    @Override
+    public String name() {
+        return "loopback";
+    }
+
+    @Override
+    public Map<String, String> params() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("transport", transport.name().toLowerCase());
+        params.put("clients", String.valueOf(CLIENTS));
+        params.put("workersPerType", String.valueOf(WORKERS_PER_TYPE));
+        return params;
+    }
+
+    @Override
+    public int initialOperations() {
+        return 20_000;
+    }
+
+    @Override
+    public void setUp() {
+        override("sim.sameTypeMillis", "0");
+        override("sim.crossTypeMillis", "0");
+    }
+
+    @Override
+    public void tearDown() {
+        previousProperties.forEach((key, value) -> {
+            if (value == null)
+                System.clearProperty(key);
+
+            else System.setProperty(key, value);
+        });
+        previousProperties.clear();
+    }
+
+    private void override(String key, String value) {
+        previousProperties.put(key, System.getProperty(key));
+        System.setProperty(key, value);
+    }
+
+    @Override
+    public long run(int operations) throws IOException, InterruptedException {
+        Conductor conductor;
+        int port = 0;
+        if (transport == TRANSPORT.MEMORY)
+            conductor = new Conductor();
+
+        else {
+            ServerSocket serverSocket = new ServerSocket(0);
+            port = serverSocket.getLocalPort();
+            conductor = new Conductor(serverSocket);
+        }
+
+        conductor.begin();
+        for (int i = 0; i < WORKERS_PER_TYPE; i++) {
+            Worker workerA = transport == TRANSPORT.MEMORY
+                    ? new Worker(conductor.connectInMemory(), A) : new Worker(new Socket("127.0.0.1", port), A);
+            Worker workerB = transport == TRANSPORT.MEMORY
+                    ? new Worker(conductor.connectInMemory(), B) : new Worker(new Socket("127.0.0.1", port), B);
+            Threads.start("worker-A", workerA::begin);
+            Threads.start("worker-B", workerB::begin);
+        }
+
+        List<Client> clients = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            int tasks = operations / CLIENTS + (i < operations % CLIENTS ? 1 : 0);
+            Client client = transport == TRANSPORT.MEMORY
+                    ? new Client(conductor.connectInMemory(), tasks) : new Client(new Socket("127.0.0.1", port), tasks);
+            client.begin();
+            clients.add(client);
+        }
+
+        for (Client client : clients)
+            client.awaitTermination();
+
+        return operations;
+    }
+}
@@ -0,0 +1,47 @@
+package sim.bench;
+
+import sim.client.TaskTracker;
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures a Client's bookkeeping: every task is taken from a {@link TaskTracker} to be sent and later given back as
+ * completed, in batches as the Conductor returns them.
+ * <p>
+ * One operation is one task created, taken and given back.
+ */
+class TaskTrackerBenchmark implements Benchmark {
+
+    private static final int RETURN_BATCH = 64;
+
+    @Override
+    public String name() {
+        return "taskTracker";
+    }
+
+    @Override
+    public Map<String, String> params() {
+        return Map.of();
+    }
+
+    @Override
+    public long run(int operations) {
+        TaskTracker taskTracker = new TaskTracker(0);
+        List<Task> returned = new ArrayList<>(RETURN_BATCH);
+        for (int i = 0; i < operations; i++) {
+            returned.add(taskTracker.take((i & 1) == 0 ? TASK_TYPE.A : TASK_TYPE.B));
+            if (returned.size() == RETURN_BATCH) {
+                taskTracker.give(returned);
+                returned.clear();
+            }
+        }
+
+        taskTracker.finish();
+        taskTracker.give(returned);
+        return taskTracker.isSatisfied() ? operations : -1;
+    }
+}
@@ -0,0 +1,93 @@
+package sim.bench;
+
+import sim.client.Client;
+import sim.concurrent.THREAD_MODE;
+import sim.concurrent.Threads;
+import sim.conductor.Conductor;
+import sim.worker.Worker;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static sim.task.TASK_TYPE.A;
+import static sim.task.TASK_TYPE.B;
+
+/**
+ * Compares platform and virtual threads by running a whole simulation (a Conductor, many Clients and a few Workers that
+ * complete tasks instantly) once per {@link THREAD_MODE}, each in a fresh JVM. For every mode it prints the wall time,
+ * the task throughput and the peak amount of platform threads that were alive.
+ * <p>
+ * Usage: {@code java sim.bench.ThreadModeBenchmark [clients] [tasks per client] [workers per type]}
+ */
+public class ThreadModeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int tasksPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int workersPerType = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        if (System.getProperty("sim.threads") != null) {
+            run(clients, tasksPerClient, workersPerType);
+            System.exit(0);
+        }
+
+        for (THREAD_MODE mode : THREAD_MODE.values())
+            fork(mode, args);
+    }
+
+    /**
+     * Runs this benchmark in a child JVM for the given mode. The child's component output is discarded and only its
+     * result line, written to standard error, is shown.
+     */
+    private static void fork(THREAD_MODE mode, String[] args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                "-Dsim.threads=" + mode.name().toLowerCase(),
+                "-Dsim.sameTypeMillis=0",
+                "-Dsim.crossTypeMillis=0",
+                ThreadModeBenchmark.class.getName()));
+        command.addAll(List.of(args));
+
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        process.waitFor();
+    }
+
+    private static void run(int clients, int tasksPerClient, int workersPerType) throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0);
+        int port = serverSocket.getLocalPort();
+        new Conductor(serverSocket).begin();
+
+        for (int i = 0; i < workersPerType; i++) {
+            Worker workerA = new Worker(new Socket("127.0.0.1", port), A);
+            Worker workerB = new Worker(new Socket("127.0.0.1", port), B);
+            Threads.start("worker-A", workerA::begin);
+            Threads.start("worker-B", workerB::begin);
+        }
+
+        long start = System.nanoTime();
+        List<Client> started = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client(new Socket("127.0.0.1", port), tasksPerClient);
+            client.begin();
+            started.add(client);
+        }
+
+        for (Client client : started)
+            client.awaitTermination();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long tasks = (long) clients * tasksPerClient;
+        System.err.printf("threads=%s clients=%d tasks=%d seconds=%.3f tasksPerSecond=%.0f peakPlatformThreads=%d%n",
+                Threads.effectiveMode(), clients, tasks, seconds, tasks / seconds,
+                ManagementFactory.getThreadMXBean().getPeakThreadCount());
+    }
+}
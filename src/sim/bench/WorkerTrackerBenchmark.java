@@ -0,0 +1,101 @@
+package sim.bench;
+
+import sim.comms.wire.Handshake;
+import sim.component.ComponentID;
+import sim.conductor.WorkerTracker;
+import sim.conductor.comms.WorkerHandler;
+import sim.task.TASK_TYPE;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static sim.component.COMPONENT_TYPE.WORKER;
+
+/**
+ * Measures contention on the {@link WorkerTracker}: several threads keep taking a free slot of a worker and handing it
+ * back, as the Dispatcher and the handlers of returning workers do in a running Conductor.
+ * <p>
+ * One operation is one slot taken and returned, and the operations are split evenly between the threads.
+ */
+class WorkerTrackerBenchmark implements Benchmark {
+
+    private static final int WORKERS_PER_TYPE = 4;
+    private static final TASK_TYPE[] TYPES = TASK_TYPE.values();
+
+    private final int threads;
+    private WorkerTracker workerTracker;
+
+    /**
+     * @param threads how many threads take and return slots at once
+     */
+    WorkerTrackerBenchmark(int threads) {
+        this.threads = threads;
+    }
+
+    @Override
+    public String name() {
+        return "workerTracker";
+    }
+
+    @Override
+    public Map<String, String> params() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("threads", String.valueOf(threads));
+        return params;
+    }
+
+    @Override
+    public int threads() {
+        return threads;
+    }
+
+    @Override
+    public void setUp() {
+        workerTracker = new WorkerTracker();
+        int refID = 0;
+        for (TASK_TYPE type : TYPES) {
+            for (int i = 0; i < WORKERS_PER_TYPE; i++) {
+                WorkerHandler workerHandler = new WorkerHandler(
+                        Handshake.worker(new ComponentID(WORKER, ++refID), type, 1, 0), new BenchConnection((to, unit) -> {}));
+                workerTracker.add(workerHandler);
+            }
+        }
+    }
+
+    @Override
+    public long run(int operations) throws InterruptedException {
+        long[] taken = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] takers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int taker = t;
+            int share = operations / threads + (t < operations % threads ? 1 : 0);
+            takers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                for (int i = 0; i < share; i++) {
+                    WorkerHandler workerHandler = workerTracker.pollHandler(TYPES[(taker + i) % TYPES.length]);
+                    if (workerHandler != null) {
+                        workerTracker.update(workerHandler);
+                        taken[taker]++;
+                    }
+                }
+            }, "tracker-bench-" + t);
+            takers[t].start();
+        }
+
+        start.countDown();
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            takers[t].join();
+            total += taken[t];
+        }
+
+        return total;
+    }
+}
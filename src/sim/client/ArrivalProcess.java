@@ -0,0 +1,22 @@
+package sim.client;
+
+/**
+ * Decides when a {@link Client} in open-loop mode issues its tasks. Every task has an intended start time, which is
+ * the one before it plus the next gap of its arrival process, regardless of how quickly earlier tasks were sent or
+ * completed. A Client that falls behind its schedule sends what is due at once, and the time it was late counts towards
+ * the latency of the late tasks.
+ * <p>
+ * A process is only ever used by a single thread.
+ */
+public interface ArrivalProcess {
+
+    /**
+     * @return the name of the process, e.g. as selected with {@code sim.arrivals}
+     */
+    String name();
+
+    /**
+     * @return the time between the intended start of the previous task and that of the next one, in nanoseconds
+     */
+    long nextGapNanos();
+}
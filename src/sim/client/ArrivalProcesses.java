@@ -0,0 +1,42 @@
+package sim.client;
+
+import sim.config.Config;
+
+import java.util.Random;
+
+/**
+ * Lookup for the {@link ArrivalProcess}es that ship with the simulation.
+ */
+public final class ArrivalProcesses {
+
+    private ArrivalProcesses() {}
+
+    /**
+     * @param name the name of a process: {@value ConstantArrivals#NAME}, {@value PoissonArrivals#NAME} or
+     *             {@value BurstyArrivals#NAME}
+     * @param ratePerSecond how many tasks to issue per second on average
+     * @param random where random gaps are drawn from
+     * @return the process with the given name
+     * @throws IllegalArgumentException if no process goes by that name
+     */
+    public static ArrivalProcess named(String name, double ratePerSecond, Random random) {
+        if (ratePerSecond <= 0)
+            throw new IllegalArgumentException("The rate must be positive, was " + ratePerSecond);
+
+        return switch (name) {
+            case ConstantArrivals.NAME -> new ConstantArrivals(ratePerSecond);
+            case PoissonArrivals.NAME -> new PoissonArrivals(ratePerSecond, random);
+            case BurstyArrivals.NAME -> new BurstyArrivals(ratePerSecond, Config.burstSize(), random);
+            default -> throw new IllegalArgumentException("Unknown arrival process: " + name);
+        };
+    }
+
+    /**
+     * @return the process selected via {@link Config#arrivals()} at {@link Config#rate()}, or {@code null} if no rate is
+     * set and Clients should run closed-loop
+     */
+    public static ArrivalProcess defaultProcess() {
+        double rate = Config.rate();
+        return rate > 0 ? named(Config.arrivals(), rate, new Random()) : null;
+    }
+}
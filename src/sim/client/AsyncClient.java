@@ -0,0 +1,297 @@
+package sim.client;
+
+import sim.comms.Connection;
+import sim.comms.Receiver;
+import sim.comms.Sender;
+import sim.comms.SocketConnection;
+import sim.comms.wire.Credit;
+import sim.comms.wire.Handshake;
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageReader;
+import sim.comms.wire.MessageWriter;
+import sim.comms.wire.TaskBatch;
+import sim.comms.wire.WireCodecs;
+import sim.component.ComponentID;
+import sim.concurrent.Threads;
+import sim.conductor.Conductor;
+import sim.config.Config;
+import sim.log.Log;
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static sim.component.COMPONENT_TYPE.CLIENT;
+import static sim.task.TASK_TYPE.A;
+
+/**
+ * A Client meant to be embedded in other programs: instead of sending a fixed workload, it lets any number of threads
+ * submit tasks over one shared connection to the {@link Conductor}, and hands each caller a {@link CompletableFuture}
+ * that completes once its task comes back. Callers can therefore pipeline work without each holding a socket and a
+ * thread of their own.
+ * <p>
+ * Submitted tasks are queued for a single sender thread, which batches them as far as the Conductor's {@link Credit}s
+ * allow, just like {@link Client}. A single receiver thread matches every returned task to its future by task ID. At
+ * most a fixed amount of tasks is in flight at once; {@link #submit(TASK_TYPE)} waits for room beyond that, which slows
+ * callers down to the pace of the Conductor. Futures are completed on the receiver thread, so callbacks that take
+ * longer than a moment should be attached with the {@code ...Async} methods of {@link CompletableFuture}.
+ * <p>
+ * Once {@link #close()} is called, no more tasks are accepted; the tasks in flight are completed first, and then the
+ * connection is closed. If the connection is lost, every future still in flight fails with an {@link IOException}.
+ */
+public class AsyncClient implements AutoCloseable {
+
+    private final ComponentID myComponentID = new ComponentID(CLIENT, ThreadLocalRandom.current().nextInt());
+    private final Task ENDER_TASK = new Task(myComponentID.refID(), -1, A);
+    private final Connection connection;
+    private final MessageWriter out;
+    private final int maxInFlight;
+    private final int mask;
+    private final Semaphore window;
+    private final Semaphore credits = new Semaphore(0);
+    private final AtomicInteger nextTaskID = new AtomicInteger();
+    private final AtomicReferenceArray<Pending> inFlight;
+    private final BlockingQueue<Task> outgoingTasks = new LinkedBlockingQueue<>();
+    private final TaskSender sender = new TaskSender();
+    private final TaskReceiver receiver = new TaskReceiver();
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private Thread senderThread;
+    private Thread receiverThread;
+
+    /**
+     * A task that has been submitted and not returned yet, along with the future of its caller.
+     */
+    private record Pending(Task task, CompletableFuture<Task> future) {}
+
+    /**
+     * @param socket the socket connected to the Conductor
+     * @param maxInFlight how many submitted tasks may be on their way at once
+     * @throws IOException if the socket's streams cannot be opened
+     */
+    public AsyncClient(Socket socket, int maxInFlight) throws IOException {
+        this(new SocketConnection(socket, WireCodecs.defaultCodec()), maxInFlight);
+    }
+
+    /**
+     * @param connection the connection to the Conductor
+     * @param maxInFlight how many submitted tasks may be on their way at once
+     */
+    public AsyncClient(Connection connection, int maxInFlight) {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("At least one task must be allowed in flight");
+
+        this.connection = connection;
+        this.out = connection.writer();
+        this.maxInFlight = maxInFlight;
+        this.window = new Semaphore(maxInFlight);
+
+        // Every task in flight occupies the slot of its ID modulo the amount of slots. There are at least twice as many
+        // slots as tasks in flight, so a submitted task rarely has to skip an ID whose slot is still taken
+        int slots = Integer.highestOneBit(maxInFlight * 2 - 1) * 2;
+        this.mask = slots - 1;
+        this.inFlight = new AtomicReferenceArray<>(slots);
+    }
+
+    /**
+     * Notifies the {@link Conductor} of the oncoming connection and starts the sender and receiver threads.
+     * @throws IOException if the handshake cannot be sent
+     */
+    public void begin() throws IOException {
+        out.send(Handshake.client(myComponentID));
+        senderThread = Threads.start("async-client-" + myComponentID.refID() + "-sender", sender);
+        receiverThread = Threads.start("async-client-" + myComponentID.refID() + "-receiver", receiver);
+    }
+
+    /**
+     * Submits a new task, waiting for room if the maximum amount of tasks is already in flight.
+     * @param type the type of the task
+     * @return a future that completes with the task once the Conductor returns it, or fails if the task cannot be
+     * performed because the client is closed, its connection is lost or the calling thread is interrupted while waiting
+     * for room
+     */
+    public CompletableFuture<Task> submit(TASK_TYPE type) {
+        CompletableFuture<Task> future = new CompletableFuture<>();
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        if (closed || failure != null) {
+            window.release();
+            future.completeExceptionally(failure != null ? failure : new IOException("Client is closed"));
+            return future;
+        }
+
+        Pending pending;
+        do {
+            int taskID = nextTaskID.getAndIncrement() & Integer.MAX_VALUE;
+            pending = new Pending(new Task(myComponentID.refID(), taskID, type), future);
+        } while (!inFlight.compareAndSet(pending.task().taskID() & mask, null, pending));
+
+        // The connection may have been lost while the slot was claimed, after its futures had already been failed
+        if (failure != null && inFlight.compareAndSet(pending.task().taskID() & mask, pending, null)) {
+            window.release();
+            future.completeExceptionally(failure);
+            return future;
+        }
+
+        outgoingTasks.add(pending.task());
+        return future;
+    }
+
+    /**
+     * @return how many submitted tasks have not been returned yet
+     */
+    public int getInFlight() {
+        return maxInFlight - window.availablePermits();
+    }
+
+    /**
+     * Stops accepting tasks, waits until every task in flight has been returned and then closes the connection.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        window.acquireUninterruptibly(maxInFlight);
+        window.release(maxInFlight); // Whoever still waits for room is turned away now that the client is closed
+        outgoingTasks.add(ENDER_TASK);
+        try {
+            if (senderThread != null)
+                senderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            connection.close();
+            if (receiverThread != null)
+                receiverThread.join();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Log.info("CLIENT %d: Closed", myComponentID.refID());
+    }
+
+    /**
+     * Completes the future of a returned task and makes room for another one.
+     */
+    private void complete(Task task) {
+        int slot = task.taskID() & mask;
+        Pending pending = inFlight.get(slot);
+        if (pending == null || pending.task().taskID() != task.taskID() || !inFlight.compareAndSet(slot, pending, null)) {
+            Log.warn("CLIENT %d: Rejected %s, it was already completed or never sent", myComponentID.refID(), task);
+            return;
+        }
+
+        window.release();
+        pending.future().complete(task);
+    }
+
+    /**
+     * Fails every future still in flight once the connection is lost.
+     */
+    private void fail(IOException cause) {
+        failure = cause;
+        for (int slot = 0; slot <= mask; slot++) {
+            Pending pending = inFlight.getAndSet(slot, null);
+            if (pending != null) {
+                window.release();
+                pending.future().completeExceptionally(cause);
+            }
+        }
+
+        senderThread.interrupt();
+    }
+
+    /**
+     * Sends submitted tasks to the Conductor. Every task costs one credit; tasks that are already queued are batched
+     * for as long as credits are available without waiting.
+     */
+    private class TaskSender implements Runnable, Sender {
+        @Override public void run() {
+            send();
+        }
+
+        @Override
+        public void send() {
+            int batchSize = Config.batchSize();
+            List<Task> batch = new ArrayList<>(batchSize);
+            try {
+                while (true) {
+                    Task task = outgoingTasks.take();
+                    if (task == ENDER_TASK) {
+                        out.send(ENDER_TASK);
+                        return;
+                    }
+
+                    credits.acquire();
+                    batch.add(task);
+                    while (batch.size() < batchSize && !outgoingTasks.isEmpty() && outgoingTasks.peek() != ENDER_TASK
+                            && credits.tryAcquire())
+                        batch.add(outgoingTasks.poll());
+
+                    out.send(TaskBatch.of(batch));
+                    Log.trace("CLIENT %d: Sent %d tasks", myComponentID.refID(), batch.size());
+                    batch.clear();
+                }
+            } catch (IOException e) {
+                if (!closed)
+                    e.printStackTrace();
+            } catch (InterruptedException e) {
+                Log.info("CLIENT %d: Sender interrupted...", myComponentID.refID());
+            }
+        }
+    }
+
+    /**
+     * Receives credits and returned tasks from the Conductor until the connection is closed.
+     */
+    private class TaskReceiver implements Runnable, Receiver {
+        @Override public void run() {
+            receive();
+        }
+
+        @Override
+        public void receive() {
+            try {
+                MessageReader in = connection.reader();
+                while (true) {
+                    Message message = in.read(); // Blocking call
+                    if (message instanceof Credit credit)
+                        credits.release(credit.amount());
+
+                    else if (message instanceof TaskBatch batch) {
+                        for (Task task : batch.tasks())
+                            complete(task);
+                    }
+
+                    else complete((Task) message);
+                }
+            } catch (IOException e) {
+                if (!closed)
+                    Log.warn("CLIENT %d: Connection to the Conductor lost", myComponentID.refID());
+                fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package sim.client;
+
+import java.util.Random;
+
+/**
+ * Issues tasks in bursts: a whole burst arrives at once, and bursts follow each other as a Poisson process. The average
+ * rate is the same as that of {@link PoissonArrivals}, but the Conductor has to absorb a burst's worth of tasks at a
+ * time.
+ */
+public class BurstyArrivals implements ArrivalProcess {
+
+    public static final String NAME = "bursty";
+
+    private final int burstSize;
+    private final PoissonArrivals bursts;
+    private int leftInBurst;
+
+    /**
+     * @param ratePerSecond how many tasks to issue per second on average
+     * @param burstSize how many tasks arrive at once
+     * @param random where the gaps between bursts are drawn from
+     */
+    public BurstyArrivals(double ratePerSecond, int burstSize, Random random) {
+        this.burstSize = Math.max(1, burstSize);
+        this.bursts = new PoissonArrivals(ratePerSecond / this.burstSize, random);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public long nextGapNanos() {
+        if (leftInBurst > 0) {
+            leftInBurst--;
+            return 0;
+        }
+
+        leftInBurst = burstSize - 1;
+        return bursts.nextGapNanos();
+    }
+}
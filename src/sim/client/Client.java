@@ -1,21 +1,41 @@
 package sim.client;
 
+import sim.comms.Connection;
 import sim.comms.Receiver;
 import sim.comms.Sender;
+import sim.comms.SocketConnection;
+import sim.comms.wire.Credit;
+import sim.comms.wire.Handshake;
+import sim.comms.wire.Message;
+import sim.comms.wire.TaskBatch;
+import sim.comms.wire.MessageReader;
+import sim.comms.wire.MessageWriter;
+import sim.comms.wire.WireCodecs;
+import sim.concurrent.Threads;
 import sim.component.ComponentID;
 import sim.conductor.Conductor;
+import sim.config.Config;
+import sim.log.Log;
+import sim.task.TASK_TYPE;
 import sim.task.Task;
 
 import java.io.IOException;
 
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static sim.component.COMPONENT_TYPE.CLIENT;
 import static sim.task.TASK_TYPE.A;
-import static sim.task.TASK_TYPE.B;
 
 /**
  * This class acts as a Client in a distributed system. It initializes tasks and utilizes multithreading to send and
@@ -26,29 +46,90 @@ import static sim.task.TASK_TYPE.B;
  * Once all tasks are sent, the TaskSender shuts itself down. Once the respective {@link TaskReceiver} receives all the
  * tasks back from the Conductor, it calls the clients terminate method to close all related resources.
  * <p>
+ * The Client never sends more tasks than the Conductor has granted it {@link Credit}s for. Whenever it runs out, the
+ * TaskSender waits until the Conductor has returned enough tasks to grant it more. Tasks are sent in batches of up to
+ * {@link Config#batchSize()} tasks, as far as the available credits allow.
+ * <p>
+ * Tasks are not generated up front: the TaskSender takes them from a {@link TaskSource} one at a time as it sends them,
+ * so a Client uses the same small amount of memory however many tasks it sends, and may go on forever.
+ * <p>
  * To use this class, start it from the command line by passing in a host name, port number, and the amount of tasks you
- * would like to get done.
+ * would like to get done. A negative amount never stops sending. With {@code sim.taskFile} set, tasks are read from that
+ * file instead (see {@link FileTaskSource}).
+ * <p>
+ * By default the Client is closed-loop: it sends tasks as fast as its credits allow. With {@code sim.rate} set, it
+ * becomes an open-loop load generator that issues tasks at that rate following an {@link ArrivalProcess}, and reports
+ * latency percentiles measured from when each task was due, which stay honest when the Conductor falls behind (see
+ * {@link LatencyRecorder}).
+ * <p>
+ * With {@code sim.reconnectMillis} set, a Client that loses its Conductor reattaches to it: it reconnects under the same
+ * {@link ComponentID} and sends every task that has not come back yet again, spending credits on them like on any
+ * other task. A Conductor that kept running, or a durable one restarted on its write-ahead log, recognizes the tasks it
+ * still holds, leaves them out and hands their credits back.
  */
 public class Client {
 
     private static final Random RANDOM = new Random();
+    private static final long FULL_BACKOFF_NANOS = 100_000;
 
     private final ComponentID myComponentID = new ComponentID(CLIENT, RANDOM.nextInt());
     private final Task ENDER_TASK = new Task(myComponentID.refID(), -1, A);
-    private final Socket mySocket;
-    private final TaskTracker taskTracker;
+    private volatile Connection connection;
+    private final TaskTracker taskTracker = new TaskTracker(myComponentID.refID());
+    private final TaskSource taskSource;
+    private final ArrivalProcess arrivals;
+    private final LatencyRecorder latencies;
     private final TaskSender sender = new TaskSender();
     private final TaskReceiver receiver = new TaskReceiver();
-    private ObjectOutputStream objOut;
+    private volatile MessageWriter out;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Semaphore credits = new Semaphore(0);
+    private final ReentrantLock attachmentLock = new ReentrantLock();
+    private final Condition reattached = attachmentLock.newCondition();
+    private int attachments;
+    private Callable<Connection> reconnector;
+    private Map<Integer, Task> unconfirmed;
+    private TASK_TYPE nextType;
+    private Thread senderThread;
+    private Thread receiverThread;
+    private Thread resenderThread;
 
     /**
      * @param clientSocket the socket that the client will use to send and receive messages from the Conductor
      * @param taskAmt how many tasks the Client should generate and send / receive to and from the Conductor
+     * @throws IOException if the socket's output stream cannot be opened
+     */
+    public Client(Socket clientSocket, int taskAmt) throws IOException {
+        this(new SocketConnection(clientSocket, WireCodecs.defaultCodec()), taskAmt);
+    }
+
+    /**
+     * @param connection the connection that the client will use to send and receive messages from the Conductor
+     * @param taskAmt how many tasks the Client should generate and send / receive to and from the Conductor
+     */
+    public Client(Connection connection, int taskAmt) {
+        this(connection, new RandomTaskSource(taskAmt, Config.ratioA(), RANDOM));
+    }
+
+    /**
+     * @param connection the connection that the client will use to send and receive messages from the Conductor
+     * @param taskSource where the tasks the Client sends come from, one at a time as they are sent
+     */
+    public Client(Connection connection, TaskSource taskSource) {
+        this(connection, taskSource, ArrivalProcesses.defaultProcess());
+    }
+
+    /**
+     * @param connection the connection that the client will use to send and receive messages from the Conductor
+     * @param taskSource where the tasks the Client sends come from, one at a time as they are sent
+     * @param arrivals when to issue each task in open-loop mode, or {@code null} to send tasks as fast as credits allow
      */
-    public Client(Socket clientSocket, int taskAmt) {
-        mySocket = clientSocket;
-        taskTracker = new TaskTracker(initializeTasks(taskAmt));
-        initializeStreams();
+    public Client(Connection connection, TaskSource taskSource, ArrivalProcess arrivals) {
+        this.connection = connection;
+        this.out = connection.writer();
+        this.taskSource = taskSource;
+        this.arrivals = arrivals;
+        this.latencies = arrivals == null ? null : new LatencyRecorder();
     }
 
     /**
@@ -57,54 +138,214 @@ public class Client {
      */
     public void begin() {
         notifyConductor();
-        sender.start();
-        receiver.start();
+        nextType = pull();
+        senderThread = Threads.start("client-" + myComponentID.refID() + "-sender", sender);
+        receiverThread = Threads.start("client-" + myComponentID.refID() + "-receiver", receiver);
     }
 
     /**
-     * This method is internally used by the client. It uses the client socket used by this client instance to instantiate
-     * output and input streams to use to communicate to the Conductor.
+     * Blocks until every task has been returned by the {@link Conductor} and the connection has been closed. Virtual
+     * threads do not keep the JVM alive on their own, so callers that run a Client from {@code main} should wait here.
+     * @throws InterruptedException if interrupted while waiting
      */
-    private void initializeStreams() {
-        try {
-            objOut = new ObjectOutputStream(mySocket.getOutputStream());
-        } catch (IOException e){
-            e.printStackTrace();
-        }
+    public void awaitTermination() throws InterruptedException {
+        if (receiverThread != null)
+            receiverThread.join();
+    }
+
+    /**
+     * Lets the Client reattach to the {@link Conductor} whenever its connection is lost, every
+     * {@link Config#reconnectMillis()} until it succeeds. Tasks are kept until they come back, so that they can be sent
+     * again over the new connection. Must be called before the Client is begun.
+     * @param reconnector opens a new connection to the Conductor
+     */
+    public void setReconnector(Callable<Connection> reconnector) {
+        this.reconnector = reconnector;
+        this.unconfirmed = new ConcurrentHashMap<>();
     }
 
     /**
-     * This method is internally used to close all resources related to the client by closing the client socket used by this
+     * @return the latencies measured in open-loop mode, or {@code null} if the Client runs closed-loop
+     */
+    public LatencyRecorder getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * This method is internally used to close all resources related to the client by closing the connection used by this
      * client instance.
      */
     private void terminate() {
-        System.out.printf("CLIENT %d: Received all tasks, ending communication with conductor...\n", myComponentID.refID());
+        Log.info("CLIENT %d: Received all tasks, ending communication with conductor...", myComponentID.refID());
+        senderThread.interrupt(); // In case it is still waiting for credits
+        if (resenderThread != null)
+            resenderThread.interrupt();
+        if (latencies != null)
+            report();
 
+        writeLock.lock();
         try {
-            objOut.writeObject(ENDER_TASK);
-            mySocket.close();
+            out.send(ENDER_TASK);
+            connection.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            writeLock.unlock();
         }
     }
 
     /**
-     * @param taskAmount amount of tasks to generate and initialize
-     * @return an array of Tasks that contains as many tasks as specified via 'taskAmount'
+     * Reconnects to the {@link Conductor} after the connection was lost, announces the Client under its own
+     * {@link ComponentID} again and starts sending every task that has not come back yet. Credits granted over the lost
+     * connection are void; the Conductor grants new ones, which the unconfirmed tasks are sent again with. A resend
+     * still in progress from an earlier attachment is abandoned, since the new one covers its tasks.
+     * @throws InterruptedException if interrupted while waiting to try again
      */
-    private Task[] initializeTasks(int taskAmount)
-    {
-        Task[] tasks = new Task[taskAmount];
-        for (int i = 0; i < taskAmount; i++) {
+    private void reattach() throws InterruptedException {
+        if (resenderThread != null) {
+            resenderThread.interrupt();
+            resenderThread.join();
+        }
 
-            if (RANDOM.nextDouble() > 0.50)
-                tasks[i] = new Task(myComponentID.refID(), i, A);
+        List<Task> resent = reconnect();
+        resent.sort(Comparator.comparingInt(Task::taskID));
+        Log.info("CLIENT %d: Reattached to the Conductor, sending %d unconfirmed tasks again", myComponentID.refID(),
+                resent.size());
+        resenderThread = Threads.start("client-" + myComponentID.refID() + "-resender", () -> resend(resent));
+        attachmentLock.lock();
+        try {
+            attachments++;
+            reattached.signalAll();
+        } finally {
+            attachmentLock.unlock();
+        }
+    }
+
+    /**
+     * Opens a new connection to the {@link Conductor} and announces the Client on it, every
+     * {@link Config#reconnectMillis()} until it succeeds.
+     * @return the tasks that were unconfirmed when the new connection took over
+     * @throws InterruptedException if interrupted while waiting to try again
+     */
+    private List<Task> reconnect() throws InterruptedException {
+        long reconnectMillis = Math.max(1, Config.reconnectMillis());
+        while (true) {
+            Thread.sleep(reconnectMillis);
+            writeLock.lock();
+            try {
+                Connection reconnected = reconnector.call();
+                credits.drainPermits();
+                connection = reconnected;
+                out = reconnected.writer();
+                out.send(Handshake.client(myComponentID));
+                return new ArrayList<>(unconfirmed.values());
+            } catch (Exception e) {
+                Log.warn("CLIENT %d: Could not reattach to the Conductor (%s), trying again...", myComponentID.refID(), e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
 
-            else tasks[i] = new Task(myComponentID.refID(), i, B);
+    /**
+     * Sends unconfirmed tasks again after reattaching, one credit per task and in batches of up to
+     * {@link Config#batchSize()}, like the {@link TaskSender} does. Tasks that come back in the meantime are skipped. Gives
+     * up once the connection is lost again, since the next attachment sends them all again anyway.
+     * @param tasks the unconfirmed tasks, oldest first
+     */
+    private void resend(List<Task> tasks) {
+        int batchSize = Config.batchSize();
+        List<Task> batch = new ArrayList<>(batchSize);
+        try {
+            for (Task task : tasks) {
+                if (!credits.tryAcquire()) {
+                    resendBatch(batch);
+                    credits.acquire();
+                }
 
+                // Credits come after the completions that freed them, so a task that came back meanwhile is known by now
+                if (!unconfirmed.containsKey(task.taskID())) {
+                    credits.release();
+                    continue;
+                }
+
+                batch.add(task);
+                if (batch.size() == batchSize)
+                    resendBatch(batch);
+            }
+
+            resendBatch(batch);
+        } catch (IOException e) {
+            Log.info("CLIENT %d: Connection lost while sending unconfirmed tasks again", myComponentID.refID());
+        } catch (InterruptedException e) {
+            // The Client has reattached once more, or is terminating
         }
+    }
+
+    private void resendBatch(List<Task> batch) throws IOException {
+        if (batch.isEmpty())
+            return;
 
-        return tasks;
+        writeLock.lock();
+        try {
+            out.send(TaskBatch.of(batch));
+        } finally {
+            writeLock.unlock();
+        }
+
+        Log.trace("CLIENT %d: Sent %d unconfirmed tasks again", myComponentID.refID(), batch.size());
+        batch.clear();
+    }
+
+    /**
+     * @return how often the Client has reattached so far
+     */
+    private int attachments() {
+        attachmentLock.lock();
+        try {
+            return attachments;
+        } finally {
+            attachmentLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the Client has reattached more often than the given amount of times. The wait is on a lock rather than
+     * a monitor, so that a sender running on a virtual thread does not pin its carrier while the Client reconnects.
+     */
+    private void awaitReattachment(int attachmentsSeen) throws InterruptedException {
+        attachmentLock.lock();
+        try {
+            while (attachments == attachmentsSeen)
+                reattached.await();
+        } finally {
+            attachmentLock.unlock();
+        }
+    }
+
+    /**
+     * Prints the latencies measured in open-loop mode, both from when tasks were due and from when they were sent.
+     */
+    private void report() {
+        Log.info("CLIENT %d: %d tasks completed at %.1f tasks/s, %s arrivals", myComponentID.refID(),
+                latencies.corrected().count(), latencies.throughput(), arrivals.name());
+        Log.info("CLIENT %d: Latency in ms from intended start: %s", myComponentID.refID(),
+                LatencyRecorder.describe(latencies.corrected()));
+        Log.info("CLIENT %d: Latency in ms from actual send (uncorrected for coordinated omission): %s",
+                myComponentID.refID(), LatencyRecorder.describe(latencies.uncorrected()));
+    }
+
+    /**
+     * Takes the type of the next task from the {@link TaskSource}. The source is always read one task ahead, so that the
+     * {@link TaskTracker} learns that no more tasks will be taken before the last one is sent.
+     * @return the type of the next task, or {@code null} if there is none
+     */
+    private TASK_TYPE pull() {
+        TASK_TYPE type = taskSource.next();
+        if (type == null)
+            taskTracker.finish();
+
+        return type;
     }
 
     /**
@@ -112,7 +353,7 @@ public class Client {
      */
     private void notifyConductor() {
         try {
-            objOut.writeObject(myComponentID);
+            out.send(Handshake.client(myComponentID));
         } catch (IOException e)
         {
             throw new RuntimeException(e);
@@ -120,12 +361,17 @@ public class Client {
     }
 
     /**
-     * This class is used by the Client to send {@link Task}s to a {@link sim.conductor.Conductor} program. It extends {@link Thread}
-     * and will run concurrently along with this class's counterpart, {@link TaskReceiver}.
+     * This class is used by the Client to send {@link Task}s to a {@link sim.conductor.Conductor} program. It runs on its
+     * own thread (see {@link Threads}) and will run concurrently along with this class's counterpart, {@link TaskReceiver}.
      * <p>
-     * Once all tasks are sent, the thread shuts itself down.
+     * Every task costs one credit. Tasks are batched for as long as credits are available without waiting, and the
+     * batch is sent as soon as the sender would have to wait. Once all tasks are sent, the thread shuts itself down.
+     * <p>
+     * In open-loop mode, the sender also waits for each task's intended start time, as set by the Client's
+     * {@link ArrivalProcess}. Tasks whose time has already come are batched, so a sender that has fallen behind catches up
+     * instead of drifting further from its schedule.
      */
-    private class TaskSender extends Thread implements Sender {
+    private class TaskSender implements Runnable, Sender {
         @Override public void run() {
             send();
         }
@@ -133,57 +379,183 @@ public class Client {
         @Override
         public void send() {
             try {
-                Task t;
-                while ((t = taskTracker.take()) != null) {
-                    objOut.writeObject(t);
-                    System.out.printf("CLIENT %d: Sent %s\n", myComponentID.refID(), t);
+                int batchSize = Config.batchSize();
+                List<Task> batch = new ArrayList<>(batchSize);
+                credits.acquire(); // Blocking call
+                long intendedAt = System.nanoTime();
+                while (nextType != null) {
+                    if (arrivals != null)
+                        awaitSchedule(intendedAt);
+
+                    Task task = taskTracker.take(nextType);
+                    if (latencies != null)
+                        latencies.started(task.taskID(), intendedAt, System.nanoTime());
+
+                    batch.add(task);
+                    nextType = pull();
+                    if (arrivals != null)
+                        intendedAt += arrivals.nextGapNanos();
+
+                    if (nextType != null && batch.size() < batchSize && isDue(intendedAt) && credits.tryAcquire())
+                        continue;
+
+                    sendBatch(batch);
+                    if (nextType != null)
+                        credits.acquire();
                 }
-                System.out.printf("CLIENT %d: All tasks sent, sender thread terminating...\n", myComponentID.refID());
+
+                Log.info("CLIENT %d: All tasks sent, sender thread terminating...", myComponentID.refID());
             } catch (IOException e) {
                 e.printStackTrace();
+            } catch (InterruptedException e) {
+                Log.info("CLIENT %d: Sender interrupted...", myComponentID.refID());
+            }
+        }
+
+        /**
+         * Waits until the given intended start time, and until the {@link LatencyRecorder} has room for another task.
+         */
+        private void awaitSchedule(long intendedAt) throws InterruptedException {
+            long wait;
+            while ((wait = intendedAt - System.nanoTime()) > 0 || taskTracker.outstanding() >= latencies.capacity()) {
+                LockSupport.parkNanos(this, wait > 0 ? wait : FULL_BACKOFF_NANOS);
+                if (Thread.interrupted())
+                    throw new InterruptedException();
             }
         }
+
+        private boolean isDue(long intendedAt) {
+            return arrivals == null || intendedAt - System.nanoTime() <= 0;
+        }
+
+        /**
+         * Sends a batch of tasks. Once the Client may reattach, they are kept as unconfirmed first: if the connection
+         * turns out to be lost, the batch is sent again along with all other unconfirmed tasks once the Client has
+         * reattached.
+         */
+        private void sendBatch(List<Task> batch) throws IOException, InterruptedException {
+            int attachmentsSeen = attachments();
+            boolean lost = false;
+            writeLock.lock();
+            try {
+                if (unconfirmed != null) {
+                    for (Task task : batch)
+                        unconfirmed.put(task.taskID(), task);
+                }
+
+                out.send(TaskBatch.of(batch));
+            } catch (IOException e) {
+                if (reconnector == null)
+                    throw e;
+
+                lost = true;
+            } finally {
+                writeLock.unlock();
+            }
+
+            if (lost)
+                awaitReattachment(attachmentsSeen);
+
+            if (batch.size() == 1)
+                Log.trace("CLIENT %d: Sent %s", myComponentID.refID(), batch.get(0));
+
+            else Log.trace("CLIENT %d: Sent %d tasks", myComponentID.refID(), batch.size());
+            batch.clear();
+        }
     }
 
     /**
-     * This class is used by the Client to receive {@link Task}s from a {@link sim.conductor.Conductor} program. It extends {@link Thread}
-     * and will run concurrently along with this class's counterpart, {@link TaskSender}.
+     * This class is used by the Client to receive {@link Task}s from a {@link sim.conductor.Conductor} program. It runs on
+     * its own thread (see {@link Threads}) and will run concurrently along with this class's counterpart, {@link TaskSender}.
      * <p>
      * Once the {@link Conductor} sends all tasks back to the client, this thread will shut itself, along with the connection
      * between this client instance and the Conductor down.
      */
-    private class TaskReceiver extends Thread implements Receiver {
+    private class TaskReceiver implements Runnable, Receiver {
         @Override public void run() {
             receive();
         }
 
         @Override
         public void receive() {
-            try{
-                ObjectInputStream objIn = new ObjectInputStream(mySocket.getInputStream());
-                Task incomingTask;
+            try {
                 while (!taskTracker.isSatisfied()) {
-                    taskTracker.give((incomingTask = (Task) objIn.readObject()).taskID()); // Blocking call
-                    System.out.printf("CLIENT %d: Received %s\n", myComponentID.refID(), incomingTask);
+                    try {
+                        receiveFrom(connection.reader());
+                    } catch (IOException e) {
+                        if (reconnector == null)
+                            throw e;
+
+                        Log.warn("CLIENT %d: Connection to the Conductor lost, reattaching...", myComponentID.refID());
+                        reattach();
+                    }
                 }
-            } catch (IOException | ClassNotFoundException e) {
+            } catch (IOException e) {
                 e.printStackTrace();
+            } catch (InterruptedException e) {
+                Log.info("CLIENT %d: Receiver interrupted...", myComponentID.refID());
             }
             finally {
                 terminate();
             }
         }
+
+        /**
+         * Receives credits and returned tasks until every task has come back.
+         * @param in the reader of the current connection to the Conductor
+         * @throws IOException if the connection is lost
+         */
+        private void receiveFrom(MessageReader in) throws IOException {
+            while (!taskTracker.isSatisfied()) {
+                Message message = in.read(); // Blocking call
+                if (message instanceof Credit credit) {
+                    credits.release(credit.amount());
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                if (message instanceof TaskBatch batch) {
+                    for (Task task : batch.tasks())
+                        complete(task, now);
+                    Log.trace("CLIENT %d: Received %d tasks", myComponentID.refID(), batch.tasks().size());
+                    continue;
+                }
+
+                Task incomingTask = (Task) message;
+                complete(incomingTask, now);
+                Log.trace("CLIENT %d: Received %s", myComponentID.refID(), incomingTask);
+            }
+        }
+
+        private void complete(Task task, long now) {
+            if (!taskTracker.give(task.taskID())) {
+                Log.warn("CLIENT %d: Rejected %s, it was already completed or never sent", myComponentID.refID(), task);
+                return;
+            }
+
+            if (unconfirmed != null)
+                unconfirmed.remove(task.taskID());
+            if (latencies != null)
+                latencies.completed(task.taskID(), now);
+        }
     }
 
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
 
         if (args.length != 3) {
-            System.out.println("Usage: java Client <host name> <port number> <task amount>");
+            System.out.println("Usage: java Client <host name> <port number> <task amount, negative to never stop>");
             System.exit(1);
         }
 
-        Client c = new Client(new Socket(args[0], Integer.parseInt(args[1])), Integer.parseInt(args[2]));
+        String hostName = args[0];
+        int portNumber = Integer.parseInt(args[1]);
+        Socket socket = new Socket(hostName, portNumber);
+        TaskSource taskSource = TaskSources.defaultSource(Long.parseLong(args[2]));
+        Client c = new Client(new SocketConnection(socket, WireCodecs.defaultCodec()), taskSource);
+        if (Config.reconnectMillis() > 0)
+            c.setReconnector(() -> new SocketConnection(new Socket(hostName, portNumber), WireCodecs.defaultCodec()));
         c.begin();
+        c.awaitTermination();
     }
 }
 
@@ -0,0 +1,36 @@
+package sim.client;
+
+/**
+ * Issues tasks at a fixed interval.
+ */
+public class ConstantArrivals implements ArrivalProcess {
+
+    public static final String NAME = "constant";
+
+    private final double gapNanos;
+    private double due;
+    private long issued;
+
+    /**
+     * @param ratePerSecond how many tasks to issue per second
+     */
+    public ConstantArrivals(double ratePerSecond) {
+        this.gapNanos = 1e9 / ratePerSecond;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    /**
+     * Carries the fractions of a nanosecond over, so that the rate holds exactly even when it does not divide a second.
+     */
+    @Override
+    public long nextGapNanos() {
+        due += gapNanos;
+        long gap = (long) due - issued;
+        issued += gap;
+        return gap;
+    }
+}
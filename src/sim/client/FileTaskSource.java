@@ -0,0 +1,57 @@
+package sim.client;
+
+import sim.task.TASK_TYPE;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Replays a workload from a text file with the type of one task, A or B, per line. Blank lines and lines starting with
+ * {@code #} are skipped. The file is read as the tasks are sent, so it may be far larger than the heap.
+ */
+public class FileTaskSource implements TaskSource {
+
+    private final Path file;
+    private final BufferedReader reader;
+    private long lineNumber;
+
+    /**
+     * @param file the file to read the workload from
+     * @throws IOException if the file cannot be opened
+     */
+    public FileTaskSource(Path file) throws IOException {
+        this.file = file;
+        this.reader = Files.newBufferedReader(file);
+    }
+
+    /**
+     * @throws UncheckedIOException if the file cannot be read
+     * @throws IllegalArgumentException if a line names no task type
+     */
+    @Override
+    public TASK_TYPE next() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                try {
+                    return TASK_TYPE.valueOf(line.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(file + ":" + lineNumber + ": not a task type: " + line);
+                }
+            }
+
+            reader.close();
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
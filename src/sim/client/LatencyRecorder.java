@@ -0,0 +1,97 @@
+package sim.client;
+
+import sim.metrics.Histogram;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the tasks an open-loop {@link Client} issues, twice: from the moment each task was due
+ * according to its {@link ArrivalProcess}, and from the moment it was actually sent.
+ * <p>
+ * Only the first is what the users of a system experience. A closed-loop load generator measures the second, and as soon
+ * as the system stalls, it stops sending and takes none of the samples that would have shown the stall: the stall
+ * hides in a handful of slow tasks while every task that should have been issued during it goes unmeasured. This
+ * coordinated omission makes percentiles look far better than they are. Measuring from the intended start counts the
+ * time a task could not be sent against it, as it would for a real user.
+ * <p>
+ * Start times are kept in rings indexed by task ID, so memory is fixed; the Client never has more than
+ * {@link #capacity()} tasks outstanding.
+ */
+public class LatencyRecorder {
+
+    private static final int CAPACITY = 1 << 16;
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private final long[] intendedAt = new long[CAPACITY];
+    private final long[] sentAt = new long[CAPACITY];
+    private final Histogram corrected = new Histogram(HIGHEST_TRACKABLE_NANOS);
+    private final Histogram uncorrected = new Histogram(HIGHEST_TRACKABLE_NANOS);
+    private volatile long firstIntendedAt = -1;
+    private volatile long lastCompletedAt;
+
+    /**
+     * @return how many tasks may be outstanding at once
+     */
+    public int capacity() {
+        return CAPACITY;
+    }
+
+    /**
+     * Remembers when a task was due and when it was sent. Called by the Client's sender only.
+     * @param taskID the ID of the task
+     * @param intended when the task was due, on the {@link System#nanoTime()} clock
+     * @param sent when the task was sent
+     */
+    public void started(int taskID, long intended, long sent) {
+        if (firstIntendedAt < 0)
+            firstIntendedAt = intended;
+
+        intendedAt[taskID & (CAPACITY - 1)] = intended;
+        sentAt[taskID & (CAPACITY - 1)] = sent;
+    }
+
+    /**
+     * Records the latency of a completed task. Called by the Client's receiver only, once per task.
+     * @param taskID the ID of the task
+     * @param completed when the task came back
+     */
+    public void completed(int taskID, long completed) {
+        corrected.record(completed - intendedAt[taskID & (CAPACITY - 1)]);
+        uncorrected.record(completed - sentAt[taskID & (CAPACITY - 1)]);
+        lastCompletedAt = completed;
+    }
+
+    /**
+     * @return the latencies measured from when each task was due, in nanoseconds
+     */
+    public Histogram corrected() {
+        return corrected;
+    }
+
+    /**
+     * @return the latencies measured from when each task was actually sent, in nanoseconds
+     */
+    public Histogram uncorrected() {
+        return uncorrected;
+    }
+
+    /**
+     * @return how many tasks per second completed between the first task being due and the last one completing
+     */
+    public double throughput() {
+        long elapsed = lastCompletedAt - firstIntendedAt;
+        return firstIntendedAt < 0 || elapsed <= 0 ? 0 : corrected.count() * 1e9 / elapsed;
+    }
+
+    /**
+     * @param histogram latencies in nanoseconds
+     * @return the count and the main percentiles of the histogram, in milliseconds
+     */
+    static String describe(Histogram histogram) {
+        return String.format(Locale.ROOT, "mean %.2f, p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, p99.99 %.2f, max %.2f",
+                histogram.mean() / 1e6, histogram.percentile(50) / 1e6, histogram.percentile(90) / 1e6,
+                histogram.percentile(99) / 1e6, histogram.percentile(99.9) / 1e6, histogram.percentile(99.99) / 1e6,
+                histogram.max() / 1e6);
+    }
+}
@@ -0,0 +1,34 @@
+package sim.client;
+
+import java.util.Random;
+
+/**
+ * Issues tasks as a Poisson process: gaps are exponentially distributed and independent of each other, like requests
+ * from a large population of users who do not coordinate.
+ */
+public class PoissonArrivals implements ArrivalProcess {
+
+    public static final String NAME = "poisson";
+
+    private final double meanGapNanos;
+    private final Random random;
+
+    /**
+     * @param ratePerSecond how many tasks to issue per second on average
+     * @param random where the gaps are drawn from
+     */
+    public PoissonArrivals(double ratePerSecond, Random random) {
+        this.meanGapNanos = 1e9 / ratePerSecond;
+        this.random = random;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public long nextGapNanos() {
+        return Math.round(-Math.log(1 - random.nextDouble()) * meanGapNanos);
+    }
+}
@@ -0,0 +1,40 @@
+package sim.client;
+
+import sim.task.TASK_TYPE;
+
+import java.util.Random;
+
+/**
+ * Produces tasks of random types, a given share of them of type A and the rest of type B, either up to a given amount or
+ * endlessly.
+ */
+public class RandomTaskSource implements TaskSource {
+
+    private final long amount;
+    private final double ratioA;
+    private final Random random;
+    private long produced;
+
+    /**
+     * @param amount how many tasks to produce; any negative amount never runs out
+     * @param ratioA the share of tasks that are of type A, between 0 and 1
+     * @param random where the types are drawn from
+     */
+    public RandomTaskSource(long amount, double ratioA, Random random) {
+        if (ratioA < 0 || ratioA > 1)
+            throw new IllegalArgumentException("The share of A tasks must be between 0 and 1, was " + ratioA);
+
+        this.amount = amount;
+        this.ratioA = ratioA;
+        this.random = random;
+    }
+
+    @Override
+    public TASK_TYPE next() {
+        if (amount >= 0 && produced >= amount)
+            return null;
+
+        produced++;
+        return random.nextDouble() < ratioA ? TASK_TYPE.A : TASK_TYPE.B;
+    }
+}
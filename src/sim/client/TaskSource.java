@@ -0,0 +1,18 @@
+package sim.client;
+
+import sim.task.TASK_TYPE;
+
+/**
+ * Where a {@link Client}'s workload comes from. The Client's sender asks for the type of its next task only when it is
+ * about to send it, so no source ever has to hold more than a single task in memory, and a source may go on forever.
+ * The Client numbers the tasks itself.
+ * <p>
+ * A source is only ever used by a single thread.
+ */
+public interface TaskSource {
+
+    /**
+     * @return the type of the next task, or {@code null} once the source has run out of tasks
+     */
+    TASK_TYPE next();
+}
@@ -0,0 +1,29 @@
+package sim.client;
+
+import sim.config.Config;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Lookup for the {@link TaskSource} a {@link Client} uses by default.
+ */
+public final class TaskSources {
+
+    private TaskSources() {}
+
+    /**
+     * @param amount how many random tasks to produce when no file is configured; any negative amount never runs out
+     * @return a source that replays {@link Config#taskFile()} if it is set, or else a {@link RandomTaskSource} with
+     * {@link Config#ratioA()}
+     * @throws IOException if the configured file cannot be opened
+     */
+    public static TaskSource defaultSource(long amount) throws IOException {
+        String file = Config.taskFile();
+        if (file != null)
+            return new FileTaskSource(Path.of(file));
+
+        return new RandomTaskSource(amount, Config.ratioA(), new Random());
+    }
+}
@@ -1,67 +1,165 @@
 package sim.client;
 
+import sim.task.TASK_TYPE;
 import sim.task.Task;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class is to be used by Sender and Receiver threads as a point of reference for all {@link Task} related
  * operations. The Client will use this class in order to track what tasks have been sent, received, and it all tasks
  * that have been sent have been successfully returned by the {@link sim.conductor.Conductor}.
+ * <p>
+ * The tracker numbers tasks from 0 as they are taken and needs no collection of tasks at all: completions are recorded
+ * in bitsets with one bit per task, split into segments of {@value #SEGMENT_SIZE} tasks. A segment is created when its
+ * first task is taken and dropped once all of its tasks are complete, so memory only depends on how far apart the
+ * oldest and the newest outstanding task are, not on how many tasks the Client sends in total. Task IDs wrap around
+ * after {@link Integer#MAX_VALUE}, which lets a Client run indefinitely.
+ * <p>
+ * Taking and completing tasks never locks; each is a single atomic update, which makes the tracker safe to share
+ * between any number of threads. A task that is completed twice, or was never taken, is rejected and counted instead of
+ * being counted as complete.
  */
 public class TaskTracker {
 
-    private int takePoint = 0;
-    private int insertionPoint = 0;
-    private final Task[] tasks;
-    private final Task[] completedTasks;
-    private final Map<Integer, Task> tasksInProgress = Collections.synchronizedMap(new HashMap<>());
+    private static final int SEGMENT_SHIFT = 16;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int ID_MASK = Integer.MAX_VALUE;
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int clientID;
+    private final Map<Long, Segment> segments = new ConcurrentHashMap<>();
+    private final AtomicLong taken = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean finished;
+
+    // The segments last used by take and give, so that the map is only consulted once per segment
+    private Segment takeSegment;
+    private Segment giveSegment;
+
+    /**
+     * The completion bits of {@value #SEGMENT_SIZE} consecutive tasks.
+     */
+    private static final class Segment {
+        final long number;
+        final long[] words = new long[SEGMENT_SIZE >>> 6];
+        final AtomicInteger completed = new AtomicInteger();
+
+        Segment(long number) {
+            this.number = number;
+        }
+    }
+
+    /**
+     * @param clientID the ID of the Client the tasks belong to
+     */
+    public TaskTracker(int clientID) {
+        this.clientID = clientID;
+    }
 
     /**
-     * @param tasks the tasks that are to be completed by the sim.client.
+     * Creates the next task and starts tracking it.
+     * @param type the type of the task
+     * @return the new task, numbered after the one taken before it
      */
-    public TaskTracker(Task[] tasks) {
-        this.tasks = tasks;
-        this.completedTasks = new Task[tasks.length];
+    public Task take(TASK_TYPE type) {
+        long sequence = taken.getAndIncrement();
+        long number = sequence >>> SEGMENT_SHIFT;
+        Segment segment = takeSegment;
+        if (segment == null || segment.number != number)
+            takeSegment = segments.computeIfAbsent(number, Segment::new);
+
+        return new Task(clientID, (int) (sequence & ID_MASK), type);
     }
 
     /**
-     * Takes the next sim.task from the uncompleted list of tasks and returns it or {@code null}
-     * if no other sim.task is available.
-     * @return The next Task that has yet to be completed or {@code null}
+     * Lets the tracker know that no more tasks will be taken, after which it is satisfied once every task it has handed
+     * out is complete. To not miss that moment, call this before the last task is sent.
      */
-    public Task take() {
-
-        if (takePoint >= tasks.length)
-            return null;
-
-        else{
-            synchronized (this) {
-                Task t = tasks[takePoint];
-                tasksInProgress.put(t.taskID(), t);
-                tasks[takePoint] = null;
-                takePoint++;
-                return t;
-            }
+    public void finish() {
+        finished = true;
+    }
+
+    /**
+     * Marks the task with the given ID as completed.
+     * @param taskID the ID of the task that has been completed
+     * @return true if the task had been taken and was not completed before, false if it is rejected
+     */
+    public boolean give(int taskID) {
+        long latest = taken.get() - 1;
+        long sequence = latest - ((latest - taskID) & ID_MASK);
+        Segment segment = taskID < 0 || sequence < 0 ? null : segmentOf(sequence >>> SEGMENT_SHIFT);
+        if (segment == null) {
+            rejected.incrementAndGet();
+            return false;
         }
+
+        int offset = (int) (sequence & (SEGMENT_SIZE - 1));
+        long bit = 1L << offset;
+        long previous = (long) WORDS.getAndBitwiseOr(segment.words, offset >>> 6, bit);
+        if ((previous & bit) != 0) {
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        if (segment.completed.incrementAndGet() == SEGMENT_SIZE)
+            segments.remove(segment.number);
+
+        completedCount.incrementAndGet();
+        return true;
+    }
+
+    private Segment segmentOf(long number) {
+        Segment segment = giveSegment;
+        if (segment == null || segment.number != number) {
+            segment = segments.get(number);
+            giveSegment = segment;
+        }
+
+        return segment;
     }
 
     /**
-     * Removes the given sim.task from tracking collection and moves it into a 'completion array'
-     * @param taskID the ID of the sim.task thast has been completed
+     * Marks all given tasks as completed at once.
+     * @param completedTasks the tasks that have been completed
+     * @return how many of them were accepted, see {@link #give(int)}
      */
-    public synchronized void give(int taskID) {
-        completedTasks[insertionPoint] = tasksInProgress.remove(taskID);
-        insertionPoint++;
+    public int give(List<Task> completedTasks) {
+        int accepted = 0;
+        for (Task task : completedTasks) {
+            if (give(task.taskID()))
+                accepted++;
+        }
+
+        return accepted;
     }
 
     /**
      * Use this method to test for more tasks to complete
-     * @return true if the tracker sees all tasks complete, false otherwise
+     * @return true if no more tasks will be taken and all tasks that were taken are complete, false otherwise
+     */
+    public boolean isSatisfied() {
+        return finished && completedCount.get() == taken.get();
+    }
+
+    /**
+     * @return how many tasks have been taken but not completed yet
+     */
+    public long outstanding() {
+        return taken.get() - completedCount.get();
+    }
+
+    /**
+     * @return how many completions were rejected because the task was already completed or had never been taken
      */
-    public synchronized boolean isSatisfied() {
-        return insertionPoint == tasks.length;
+    public long rejected() {
+        return rejected.get();
     }
 }
@@ -0,0 +1,29 @@
+package sim.comms;
+
+import sim.comms.wire.MessageReader;
+import sim.comms.wire.MessageWriter;
+
+import java.io.Closeable;
+
+/**
+ * A Connection is one end of a link between two components. It hands out a {@link MessageReader} and a
+ * {@link MessageWriter} so that {@link Sender} and {@link Receiver} implementations never have to deal with the
+ * underlying transport or wire format directly.
+ */
+public interface Connection extends Closeable {
+
+    /**
+     * @return the reader used to receive messages from the connected component
+     */
+    MessageReader reader();
+
+    /**
+     * @return the writer used to send messages to the connected component
+     */
+    MessageWriter writer();
+
+    /**
+     * @return true if this connection has been closed, false otherwise
+     */
+    boolean isClosed();
+}
@@ -0,0 +1,31 @@
+package sim.comms;
+
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageReader;
+
+import java.util.function.Consumer;
+
+/**
+ * A {@link Connection} that pushes incoming messages to a callback instead of having a thread block on a
+ * {@link MessageReader}. Its writer never blocks and may be used from any thread, so handlers on top of such a
+ * connection do not need dedicated {@link Sender} or {@link Receiver} threads.
+ */
+public interface EventDrivenConnection extends Connection {
+
+    /**
+     * Starts delivering incoming messages. Both callbacks are invoked on the connection's own event thread and must not
+     * block.
+     * @param onMessage invoked for every message received from the connected component
+     * @param onClose invoked once, when the connected component disconnects
+     */
+    void bind(Consumer<Message> onMessage, Runnable onClose);
+
+    /**
+     * Event-driven connections deliver messages through {@link #bind(Consumer, Runnable)} only.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    default MessageReader reader() {
+        throw new UnsupportedOperationException("Event-driven connections deliver messages through bind()");
+    }
+}
@@ -0,0 +1,101 @@
+package sim.comms;
+
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageReader;
+import sim.comms.wire.MessageWriter;
+
+import java.io.IOException;
+
+/**
+ * A {@link Connection} between two components in the same JVM. Each direction is a bounded, lock-free
+ * {@link RingChannel} that carries references to the messages themselves: nothing is encoded, copied or sent through
+ * a socket. Messages are immutable, so sharing them between the two ends is safe.
+ * <p>
+ * Like a socket, closing one end makes the other end read the messages that are still on their way and then fail with
+ * an end-of-stream, while whatever it still writes is dropped. Reading from or writing to an end that has been closed
+ * itself fails.
+ */
+public class MemoryConnection implements Connection {
+
+    private final RingChannel inbound;
+    private final RingChannel outbound;
+    private final MessageReader reader;
+    private final MessageWriter writer;
+    private MemoryConnection peer;
+    private volatile boolean closed;
+
+    private MemoryConnection(RingChannel inbound, RingChannel outbound) {
+        this.inbound = inbound;
+        this.outbound = outbound;
+        this.reader = this::read;
+        this.writer = new ChannelWriter();
+    }
+
+    /**
+     * Creates both ends of a connection.
+     * @param capacity how many messages may be on their way in each direction before writers have to wait
+     * @return one end of the connection; the other end is available through {@link #peer()}
+     */
+    public static MemoryConnection pair(int capacity) {
+        RingChannel oneWay = new RingChannel(capacity);
+        RingChannel otherWay = new RingChannel(capacity);
+        MemoryConnection one = new MemoryConnection(oneWay, otherWay);
+        MemoryConnection other = new MemoryConnection(otherWay, oneWay);
+        one.peer = other;
+        other.peer = one;
+        return one;
+    }
+
+    /**
+     * @return the other end of this connection
+     */
+    public MemoryConnection peer() {
+        return peer;
+    }
+
+    private Message read() throws IOException {
+        if (closed)
+            throw new IOException("Connection closed");
+
+        return inbound.take();
+    }
+
+    @Override
+    public MessageReader reader() {
+        return reader;
+    }
+
+    @Override
+    public MessageWriter writer() {
+        return writer;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        outbound.close();
+        inbound.close();
+    }
+
+    /**
+     * Hands every written message to the other end right away; there is nothing to flush.
+     */
+    private class ChannelWriter implements MessageWriter {
+
+        @Override
+        public void write(Message message) throws IOException {
+            if (closed)
+                throw new IOException("Connection closed");
+
+            outbound.put(message);
+        }
+
+        @Override
+        public void flush() {}
+    }
+}
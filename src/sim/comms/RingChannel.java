@@ -0,0 +1,106 @@
+package sim.comms;
+
+import sim.comms.wire.Message;
+import sim.concurrent.MpscRing;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free queue of {@link Message} references that carries one direction of a {@link MemoryConnection}.
+ * Any number of threads may write to it, while a single thread reads from it.
+ * <p>
+ * The messages are held in an {@link MpscRing}, so neither side ever takes a lock. The reader spins briefly when the
+ * channel is empty and then parks until a writer wakes it up. Writers that find the channel full back off until the
+ * reader has made room, which slows fast producers down to the pace of their consumer.
+ */
+class RingChannel {
+
+    // Spinning only pays off when the writer can make progress on another core in the meantime
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 100 : 0;
+    private static final long FULL_BACKOFF_NANOS = 20_000;
+
+    private final MpscRing<Message> ring;
+    private volatile Thread parkedReader;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity how many messages the channel holds at most, rounded up to the next power of two
+     */
+    RingChannel(int capacity) {
+        this.ring = new MpscRing<>(capacity);
+    }
+
+    /**
+     * Adds a message, waiting for room if the channel is full. Once the channel is closed, messages are dropped, just
+     * like bytes sent to a socket whose other end has gone away.
+     * @param message the message to add
+     * @throws IOException if the writing thread is interrupted while waiting for room
+     */
+    void put(Message message) throws IOException {
+        while (!offer(message)) {
+            if (Thread.interrupted())
+                throw new InterruptedIOException("Interrupted while waiting for room in the channel");
+
+            LockSupport.parkNanos(this, FULL_BACKOFF_NANOS);
+        }
+
+        Thread reader = parkedReader;
+        if (reader != null)
+            LockSupport.unpark(reader);
+    }
+
+    private boolean offer(Message message) {
+        return closed || ring.offer(message);
+    }
+
+    /**
+     * Removes the oldest message, waiting for one if the channel is empty. Messages that were added before the channel
+     * was closed are still handed out.
+     * @return the oldest message
+     * @throws IOException if the channel is closed and empty, or the reading thread is interrupted while waiting
+     */
+    Message take() throws IOException {
+        int spins = 0;
+        while (true) {
+            Message message = ring.poll();
+            if (message != null)
+                return message;
+
+            if (closed) {
+                message = ring.poll();
+                if (message != null)
+                    return message;
+
+                throw new EOFException("Connection closed by the other end");
+            }
+
+            if (spins++ < SPINS) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            // Announce the reader before the last check, so that a writer adding a message right after it wakes us up
+            parkedReader = Thread.currentThread();
+            if (ring.isEmpty() && !closed)
+                LockSupport.park(this);
+
+            parkedReader = null;
+            if (Thread.interrupted())
+                throw new InterruptedIOException("Interrupted while waiting for a message");
+        }
+    }
+
+    /**
+     * Closes the channel. Whatever is written from now on is dropped, while the reader still receives what was already
+     * added.
+     */
+    void close() {
+        closed = true;
+        Thread reader = parkedReader;
+        if (reader != null)
+            LockSupport.unpark(reader);
+    }
+}
@@ -0,0 +1,64 @@
+package sim.comms;
+
+import sim.comms.wire.MessageReader;
+import sim.comms.wire.MessageWriter;
+import sim.comms.wire.WireCodec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link Connection} over a TCP {@link Socket}. The writer is created right away, while the reader is only created the
+ * first time it is asked for, since some codecs block until the other end has written its stream header.
+ */
+public class SocketConnection implements Connection {
+
+    private final Socket socket;
+    private final WireCodec codec;
+    private final MessageWriter writer;
+    private final ReentrantLock readerLock = new ReentrantLock();
+    private MessageReader reader;
+
+    /**
+     * @param socket the connected socket
+     * @param codec the codec used to encode and decode messages on the socket
+     * @throws IOException if the socket's output stream cannot be opened
+     */
+    public SocketConnection(Socket socket, WireCodec codec) throws IOException {
+        this.socket = socket;
+        this.codec = codec;
+        this.writer = codec.newWriter(socket.getOutputStream());
+    }
+
+    @Override
+    public MessageReader reader() {
+        readerLock.lock();
+        try {
+            if (reader == null)
+                reader = codec.newReader(socket.getInputStream());
+
+            return reader;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            readerLock.unlock();
+        }
+    }
+
+    @Override
+    public MessageWriter writer() {
+        return writer;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return socket.isClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,11 @@
+package sim.comms;
+
+/**
+ * The ways in which components reach each other. TCP connects every component through a {@link SocketConnection}, which
+ * works across processes and machines. MEMORY connects components that run in the same JVM through a
+ * {@link MemoryConnection}, without any sockets or serialization.
+ */
+public enum TRANSPORT {
+    TCP,
+    MEMORY
+}
@@ -0,0 +1,278 @@
+package sim.comms.wire;
+
+import sim.component.COMPONENT_TYPE;
+import sim.component.ComponentID;
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The default {@link WireCodec}. Every message is sent as a small, length-prefixed frame:
+ * <pre>
+ *     [int length][byte version][byte frame type][payload...]
+ * </pre>
+ * where {@code length} counts every byte that follows it. A {@link Task} frame always takes {@value #TASK_FRAME_BYTES}
+ * bytes on the wire, compared to the 100+ bytes (plus class descriptors) that Java serialization needs for the same
+ * three fields.
+ * <p>
+ * The static {@link #encode(Message, ByteBuffer)} and {@link #decode(ByteBuffer)} methods work directly on buffers so
+ * that non-blocking transports can reuse the exact same framing.
+ */
+public class BinaryWireCodec implements WireCodec {
+
+    public static final String NAME = "binary";
+
+    /**
+     * Bumped whenever the layout of any frame changes. Frames carrying a different version are rejected.
+     */
+    public static final byte VERSION = 5;
+
+    /**
+     * Size of the length prefix that precedes every frame.
+     */
+    public static final int LENGTH_BYTES = Integer.BYTES;
+
+    /**
+     * The largest frame body this codec is willing to decode.
+     */
+    public static final int MAX_FRAME_BYTES = 1 << 16;
+
+    public static final int TASK_FRAME_BYTES = LENGTH_BYTES + 2 + 2 * Integer.BYTES + 1;
+
+    /**
+     * Size of a single task within a {@link TaskBatch} frame.
+     */
+    private static final int BATCHED_TASK_BYTES = 2 * Integer.BYTES + 1;
+
+    /**
+     * Size of the payload of a handshake frame.
+     */
+    private static final int HANDSHAKE_BYTES = 1 + Integer.BYTES + 1 + 2 * Integer.BYTES;
+
+    private static final byte HANDSHAKE = 1;
+    private static final byte TASK = 2;
+    private static final byte WORK_REQUEST = 3;
+    private static final byte CREDIT = 4;
+    private static final byte TASK_BATCH = 5;
+    private static final byte NONE = -1;
+
+    private static final COMPONENT_TYPE[] COMPONENT_TYPES = COMPONENT_TYPE.values();
+    private static final TASK_TYPE[] TASK_TYPES = TASK_TYPE.values();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public MessageWriter newWriter(OutputStream out) {
+        return new StreamWriter(out);
+    }
+
+    @Override
+    public MessageReader newReader(InputStream in) {
+        return new StreamReader(in);
+    }
+
+    /**
+     * Encodes a full frame, including its length prefix, at the buffer's current position.
+     * @param message the message to encode
+     * @param buffer the buffer to encode into
+     * @throws java.nio.BufferOverflowException if the buffer does not have enough room left for the frame
+     * @throws IllegalArgumentException if this codec does not know how to encode the given message
+     */
+    public static void encode(Message message, ByteBuffer buffer) {
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        buffer.put(VERSION);
+
+        if (message instanceof Task task) {
+            buffer.put(TASK);
+            putTask(task, buffer);
+        }
+
+        else if (message instanceof Handshake handshake) {
+            buffer.put(HANDSHAKE);
+            buffer.put((byte) handshake.componentID().component_type().ordinal());
+            buffer.putInt(handshake.componentID().refID());
+            buffer.put(handshake.workerType() == null ? NONE : (byte) handshake.workerType().ordinal());
+            buffer.putInt(handshake.slots());
+            buffer.putInt(handshake.prefetch());
+        }
+
+        else if (message instanceof WorkRequest request) {
+            buffer.put(WORK_REQUEST);
+            buffer.putInt(request.amount());
+        }
+
+        else if (message instanceof TaskBatch batch) {
+            buffer.put(TASK_BATCH);
+            buffer.putInt(batch.tasks().size());
+            for (Task task : batch.tasks())
+                putTask(task, buffer);
+        }
+
+        else if (message instanceof Credit credit) {
+            buffer.put(CREDIT);
+            buffer.putInt(credit.amount());
+        }
+
+        else throw new IllegalArgumentException("Cannot encode " + message.getClass().getSimpleName());
+
+        buffer.putInt(lengthPosition, buffer.position() - lengthPosition - LENGTH_BYTES);
+    }
+
+    /**
+     * Decodes the next frame out of the given buffer if the whole frame is available. If only part of a frame has been
+     * received, nothing is consumed and {@code null} is returned so that the caller may read more bytes and retry.
+     * @param buffer a buffer in read mode
+     * @return the decoded message, or {@code null} if the buffer does not yet hold a complete frame
+     * @throws ProtocolException if the frame is malformed or was written with a different protocol version
+     */
+    public static Message decode(ByteBuffer buffer) throws ProtocolException {
+        if (buffer.remaining() < LENGTH_BYTES)
+            return null;
+
+        int length = buffer.getInt(buffer.position());
+        checkLength(length);
+        if (buffer.remaining() < LENGTH_BYTES + length)
+            return null;
+
+        int bodyPosition = buffer.position() + LENGTH_BYTES;
+        buffer.position(bodyPosition + length);
+        return decodeBody(buffer.slice(bodyPosition, length));
+    }
+
+    /**
+     * Decodes the body of a frame (everything after the length prefix).
+     * @param buffer a buffer holding exactly the frame body
+     * @throws ProtocolException if the body is malformed or shorter than its frame type requires
+     */
+    private static Message decodeBody(ByteBuffer buffer) throws ProtocolException {
+        byte version = buffer.get();
+        if (version != VERSION)
+            throw new ProtocolException("Unsupported protocol version " + version + ", expected " + VERSION);
+
+        byte frameType = buffer.get();
+        return switch (frameType) {
+            case TASK -> getTask(require(buffer, BATCHED_TASK_BYTES, frameType));
+            case HANDSHAKE -> {
+                require(buffer, HANDSHAKE_BYTES, frameType);
+                COMPONENT_TYPE componentType = COMPONENT_TYPES[index(buffer.get(), COMPONENT_TYPES.length)];
+                int refID = buffer.getInt();
+                byte workerType = buffer.get();
+                int slots = buffer.getInt();
+                int prefetch = buffer.getInt();
+                yield new Handshake(new ComponentID(componentType, refID),
+                        workerType == NONE ? null : TASK_TYPES[index(workerType, TASK_TYPES.length)], slots, prefetch);
+            }
+            case WORK_REQUEST -> new WorkRequest(require(buffer, Integer.BYTES, frameType).getInt());
+            case CREDIT -> new Credit(require(buffer, Integer.BYTES, frameType).getInt());
+            case TASK_BATCH -> {
+                int count = require(buffer, Integer.BYTES, frameType).getInt();
+                if (count < 0 || count > TaskBatch.MAX_TASKS || count * BATCHED_TASK_BYTES > buffer.remaining())
+                    throw new ProtocolException("Invalid batch size " + count);
+
+                Task[] tasks = new Task[count];
+                for (int i = 0; i < count; i++)
+                    tasks[i] = getTask(buffer);
+
+                yield new TaskBatch(List.of(tasks));
+            }
+            default -> throw new ProtocolException("Unknown frame type " + frameType);
+        };
+    }
+
+    /**
+     * Makes sure a frame body holds at least as many more bytes as its frame type needs, so that a truncated frame is
+     * rejected as malformed instead of failing halfway through decoding.
+     * @return the given buffer
+     */
+    private static ByteBuffer require(ByteBuffer buffer, int bytes, byte frameType) throws ProtocolException {
+        if (buffer.remaining() < bytes)
+            throw new ProtocolException("Truncated frame of type " + frameType + ": " + buffer.remaining()
+                    + " bytes left, " + bytes + " expected");
+
+        return buffer;
+    }
+
+    private static void putTask(Task task, ByteBuffer buffer) {
+        buffer.putInt(task.clientID());
+        buffer.putInt(task.taskID());
+        buffer.put((byte) task.type().ordinal());
+    }
+
+    private static Task getTask(ByteBuffer buffer) throws ProtocolException {
+        int clientID = buffer.getInt();
+        int taskID = buffer.getInt();
+        return new Task(clientID, taskID, TASK_TYPES[index(buffer.get(), TASK_TYPES.length)]);
+    }
+
+    private static int index(byte ordinal, int bound) throws ProtocolException {
+        if (ordinal < 0 || ordinal >= bound)
+            throw new ProtocolException("Unknown enum ordinal " + ordinal);
+
+        return ordinal;
+    }
+
+    private static void checkLength(int length) throws ProtocolException {
+        if (length < 2 || length > MAX_FRAME_BYTES)
+            throw new ProtocolException("Invalid frame length " + length);
+    }
+
+    /**
+     * Encodes frames into a reusable buffer and copies them into a buffered stream.
+     */
+    private static class StreamWriter implements MessageWriter {
+
+        private final OutputStream out;
+        private final ByteBuffer frame = ByteBuffer.allocate(MAX_FRAME_BYTES + LENGTH_BYTES);
+
+        StreamWriter(OutputStream out) {
+            this.out = new BufferedOutputStream(out);
+        }
+
+        @Override
+        public void write(Message message) throws IOException {
+            frame.clear();
+            encode(message, frame);
+            out.write(frame.array(), 0, frame.position());
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads the length prefix of each frame and then the frame body into a reusable buffer.
+     */
+    private static class StreamReader implements MessageReader {
+
+        private final DataInputStream in;
+        private final ByteBuffer body = ByteBuffer.allocate(MAX_FRAME_BYTES);
+
+        StreamReader(InputStream in) {
+            this.in = new DataInputStream(new BufferedInputStream(in));
+        }
+
+        @Override
+        public Message read() throws IOException {
+            int length = in.readInt();
+            checkLength(length);
+            in.readFully(body.array(), 0, length);
+            body.clear().limit(length);
+            return decodeBody(body);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package sim.comms.wire;
+
+import sim.client.Client;
+import sim.conductor.Conductor;
+
+import java.io.Serializable;
+
+/**
+ * Sent by the {@link Conductor} to a {@link Client} to let it send more tasks. A client may only send as many tasks as
+ * it has been granted credits for, so the amount of tasks held by the Conductor never exceeds what it is willing to
+ * hold.
+ * @param amount how many more tasks the client may send
+ */
+public record Credit(int amount) implements Message, Serializable {
+}
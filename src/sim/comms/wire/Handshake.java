@@ -0,0 +1,47 @@
+package sim.comms.wire;
+
+import sim.component.ComponentID;
+import sim.conductor.Conductor;
+import sim.task.TASK_TYPE;
+
+import java.io.Serializable;
+
+/**
+ * The first message every component sends to the {@link Conductor} once connected. It lets the Conductor know what kind
+ * of component is on the other end of the connection. Workers also announce which {@link TASK_TYPE} they are best suited
+ * for, how many tasks they can execute at once and whether they pull their tasks.
+ * @param componentID the {@link ComponentID} of the connecting component
+ * @param workerType the preferred task type of a connecting worker, or {@code null} when a client connects
+ * @param slots how many tasks a connecting worker executes concurrently. 0 for clients.
+ * @param prefetch for workers in pull mode, the amount of tasks the worker keeps buffered beyond the ones it is
+ *                 executing. 0 for clients and for workers that have their tasks pushed to them.
+ */
+public record Handshake(ComponentID componentID, TASK_TYPE workerType, int slots, int prefetch)
+        implements Message, Serializable {
+
+    /**
+     * @param componentID the connecting client's ComponentID
+     * @return a Handshake announcing a client
+     */
+    public static Handshake client(ComponentID componentID) {
+        return new Handshake(componentID, null, 0, 0);
+    }
+
+    /**
+     * @param componentID the connecting worker's ComponentID
+     * @param workerType the type of task the worker is best suited for
+     * @param slots how many tasks the worker executes concurrently
+     * @param prefetch the worker's prefetch depth, or 0 if the worker should have its tasks pushed
+     * @return a Handshake announcing a worker
+     */
+    public static Handshake worker(ComponentID componentID, TASK_TYPE workerType, int slots, int prefetch) {
+        return new Handshake(componentID, workerType, slots, prefetch);
+    }
+
+    /**
+     * @return true if the announced worker asks for its tasks through {@link WorkRequest}s, false otherwise
+     */
+    public boolean isPull() {
+        return prefetch > 0;
+    }
+}
@@ -0,0 +1,9 @@
+package sim.comms.wire;
+
+/**
+ * Marker interface for everything that may travel between two connected components. A {@link WireCodec} only knows how
+ * to encode and decode Messages, so any new kind of frame exchanged by the Client, Worker and Conductor should
+ * implement this interface.
+ */
+public interface Message {
+}
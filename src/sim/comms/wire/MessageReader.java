@@ -0,0 +1,17 @@
+package sim.comms.wire;
+
+import java.io.IOException;
+
+/**
+ * Reads {@link Message}s off of a connection. Implementations are created by a {@link WireCodec} and are not expected to
+ * be shared between threads.
+ */
+public interface MessageReader {
+
+    /**
+     * Blocks until the next message has been fully received.
+     * @return the next message sent by the connected component
+     * @throws IOException if the connection is closed or the incoming data cannot be decoded
+     */
+    Message read() throws IOException;
+}
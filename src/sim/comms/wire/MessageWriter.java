@@ -0,0 +1,33 @@
+package sim.comms.wire;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link Message}s onto a connection. Implementations are created by a {@link WireCodec} and may buffer written
+ * messages until {@link #flush()} is called.
+ */
+public interface MessageWriter {
+
+    /**
+     * Encodes the given message. The message is not guaranteed to leave this process until {@link #flush()} is called.
+     * @param message the message to write
+     * @throws IOException any of the usual I/O exceptions
+     */
+    void write(Message message) throws IOException;
+
+    /**
+     * Pushes every buffered message to the connected component.
+     * @throws IOException any of the usual I/O exceptions
+     */
+    void flush() throws IOException;
+
+    /**
+     * Convenience method that writes a single message and immediately flushes it.
+     * @param message the message to send
+     * @throws IOException any of the usual I/O exceptions
+     */
+    default void send(Message message) throws IOException {
+        write(message);
+        flush();
+    }
+}
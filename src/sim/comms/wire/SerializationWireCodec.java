@@ -0,0 +1,62 @@
+package sim.comms.wire;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * The original wire format of the simulation: every {@link Message} is written with Java serialization. It is
+ * noticeably slower and larger on the wire than {@link BinaryWireCodec}, and is kept around as a fallback and as a
+ * baseline for comparison.
+ */
+public class SerializationWireCodec implements WireCodec {
+
+    public static final String NAME = "java";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    /**
+     * Creates an ObjectOutputStream and flushes its stream header immediately, so that the reader on the other end
+     * never blocks waiting for it.
+     */
+    @Override
+    public MessageWriter newWriter(OutputStream out) throws IOException {
+        ObjectOutputStream objOut = new ObjectOutputStream(out);
+        objOut.flush();
+        return new MessageWriter() {
+            @Override
+            public void write(Message message) throws IOException {
+                objOut.writeObject(message);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                objOut.flush();
+            }
+        };
+    }
+
+    /**
+     * Creates an ObjectInputStream. Note that this blocks until the other end has written its stream header.
+     */
+    @Override
+    public MessageReader newReader(InputStream in) throws IOException {
+        ObjectInputStream objIn = new ObjectInputStream(in);
+        return () -> {
+            try {
+                if (objIn.readObject() instanceof Message message)
+                    return message;
+
+                throw new StreamCorruptedException("Received an object that is not a Message");
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        };
+    }
+}
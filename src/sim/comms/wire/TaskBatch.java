@@ -0,0 +1,37 @@
+package sim.comms.wire;
+
+import sim.client.Client;
+import sim.conductor.Conductor;
+import sim.task.Task;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Several tasks sent in a single message. {@link Client}s submit their tasks in batches, and the {@link Conductor}
+ * returns completed tasks to each client in batches, so that the cost of a write, a flush and a log line is shared by
+ * all tasks of a batch.
+ * @param tasks the tasks in the batch, at most {@value #MAX_TASKS}
+ */
+public record TaskBatch(List<Task> tasks) implements Message, Serializable {
+
+    /**
+     * The largest amount of tasks a single batch may carry, so that every batch fits a single frame of any codec.
+     */
+    public static final int MAX_TASKS = 4096;
+
+    public TaskBatch {
+        if (tasks.size() > MAX_TASKS)
+            throw new IllegalArgumentException("A batch holds at most " + MAX_TASKS + " tasks, got " + tasks.size());
+
+        tasks = List.copyOf(tasks);
+    }
+
+    /**
+     * @param tasks the tasks to send
+     * @return the given task on its own if there is only one, otherwise a batch of all given tasks
+     */
+    public static Message of(List<Task> tasks) {
+        return tasks.size() == 1 ? tasks.get(0) : new TaskBatch(tasks);
+    }
+}
@@ -0,0 +1,31 @@
+package sim.comms.wire;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A WireCodec decides how {@link Message}s are laid out on a byte stream. Both ends of a connection must use the same
+ * codec. See {@link WireCodecs} for the codecs that ship with the simulation.
+ */
+public interface WireCodec {
+
+    /**
+     * @return the name used to select this codec, e.g. via the {@code sim.codec} system property
+     */
+    String name();
+
+    /**
+     * @param out the raw output stream of a connection
+     * @return a writer that encodes messages onto the given stream
+     * @throws IOException if the codec must write a stream header and fails to do so
+     */
+    MessageWriter newWriter(OutputStream out) throws IOException;
+
+    /**
+     * @param in the raw input stream of a connection
+     * @return a reader that decodes messages from the given stream
+     * @throws IOException if the codec must read a stream header and fails to do so
+     */
+    MessageReader newReader(InputStream in) throws IOException;
+}
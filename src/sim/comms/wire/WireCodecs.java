@@ -0,0 +1,31 @@
+package sim.comms.wire;
+
+import sim.config.Config;
+
+/**
+ * Lookup for the {@link WireCodec}s that ship with the simulation.
+ */
+public final class WireCodecs {
+
+    private WireCodecs() {}
+
+    /**
+     * @param name the name of a codec: {@value BinaryWireCodec#NAME} or {@value SerializationWireCodec#NAME}
+     * @return the codec with the given name
+     * @throws IllegalArgumentException if no codec goes by that name
+     */
+    public static WireCodec named(String name) {
+        return switch (name) {
+            case BinaryWireCodec.NAME -> new BinaryWireCodec();
+            case SerializationWireCodec.NAME -> new SerializationWireCodec();
+            default -> throw new IllegalArgumentException("Unknown codec: " + name);
+        };
+    }
+
+    /**
+     * @return the codec selected via {@link Config#codec()}
+     */
+    public static WireCodec defaultCodec() {
+        return named(Config.codec());
+    }
+}
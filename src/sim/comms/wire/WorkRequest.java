@@ -0,0 +1,14 @@
+package sim.comms.wire;
+
+import sim.conductor.Conductor;
+import sim.worker.Worker;
+
+import java.io.Serializable;
+
+/**
+ * Sent by a {@link Worker} running in pull mode to ask the {@link Conductor} for more tasks. Every request adds to the
+ * amount of tasks the Conductor may send to that worker; pull workers are never sent a task they did not ask for.
+ * @param amount how many more tasks the worker is ready to receive
+ */
+public record WorkRequest(int amount) implements Message, Serializable {
+}
@@ -0,0 +1,104 @@
+package sim.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring of references that any number of threads add to and a single thread removes from. It
+ * never waits: a full ring refuses the element and an empty one returns nothing, and callers decide whether to back
+ * off, park or drop.
+ * <p>
+ * Every slot of the ring carries a sequence number that tells writers whether the slot is free for their turn and tells
+ * the reader whether the slot has been filled, so neither side ever takes a lock. Writers claim their turn with a single
+ * compare-and-set.
+ * @param <E> the type of the elements
+ */
+public class MpscRing<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    /**
+     * @param capacity how many elements the ring holds at most, rounded up to the next power of two
+     */
+    public MpscRing(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("A ring needs room for at least one element");
+
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++)
+            sequences.set(i, i);
+    }
+
+    /**
+     * Adds an element, unless the ring is full.
+     * @param element the element to add
+     * @return false if the ring is full, true otherwise
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long gap = sequences.get(index) - position;
+            if (gap == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+
+                position = tail.get();
+            }
+
+            else if (gap < 0)
+                return false;
+
+            else position = tail.get();
+        }
+    }
+
+    /**
+     * Removes the oldest element. Must only be called by the reading thread.
+     * @return the oldest element, or null if the ring is empty
+     */
+    public E poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1)
+            return null;
+
+        E element = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.set(index, head + capacity);
+        head++;
+        return element;
+    }
+
+    /**
+     * @return true if the oldest element has not been added yet. Must only be called by the reading thread.
+     */
+    public boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    /**
+     * @return how many elements have been added so far, including ones that are still being added
+     */
+    public long added() {
+        return tail.get();
+    }
+
+    /**
+     * @return how many elements have been removed so far. Must only be called by the reading thread.
+     */
+    public long removed() {
+        return head;
+    }
+}
@@ -0,0 +1,10 @@
+package sim.concurrent;
+
+/**
+ * The kind of threads that run the blocking loops of the simulation's components. VIRTUAL requires a JVM that supports
+ * virtual threads (Java 21 or newer); on older JVMs {@link Threads} falls back to PLATFORM threads.
+ */
+public enum THREAD_MODE {
+    PLATFORM,
+    VIRTUAL
+}
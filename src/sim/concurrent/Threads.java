@@ -0,0 +1,108 @@
+package sim.concurrent;
+
+import sim.config.Config;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads that run the sender, receiver and service loops of every component, according to the
+ * {@link THREAD_MODE} selected by {@link Config#threadMode()}.
+ * <p>
+ * The simulation is compiled for Java 17, so virtual threads are looked up reflectively. When the running JVM does not
+ * support them, a warning is printed once and platform threads are used instead.
+ */
+public final class Threads {
+
+    private static final MethodHandle OF_VIRTUAL = lookupOfVirtual();
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static volatile boolean warned = false;
+
+    private Threads() {}
+
+    /**
+     * @return true if the running JVM is able to create virtual threads, false otherwise
+     */
+    public static boolean virtualThreadsAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return the mode threads are actually created in, which is PLATFORM whenever virtual threads are unavailable
+     */
+    public static THREAD_MODE effectiveMode() {
+        if (Config.threadMode() == THREAD_MODE.VIRTUAL && !virtualThreadsAvailable()) {
+            if (!warned) {
+                warned = true;
+                System.err.println("Virtual threads are not supported by this JVM, falling back to platform threads");
+            }
+            return THREAD_MODE.PLATFORM;
+        }
+
+        return Config.threadMode();
+    }
+
+    /**
+     * Creates and starts a thread in the configured mode.
+     * @param name the name of the thread
+     * @param task the loop the thread should run
+     * @return the started thread
+     */
+    public static Thread start(String name, Runnable task) {
+        Thread thread = factory(name).newThread(task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * @param threads the amount of threads in the pool
+     * @param name the name prefix of the pool's threads
+     * @return a fixed pool whose threads are created in the configured mode
+     */
+    public static ExecutorService newFixedThreadPool(int threads, String name) {
+        return Executors.newFixedThreadPool(threads, factory(name));
+    }
+
+    /**
+     * @param name the name prefix of the created threads
+     * @return a factory that creates threads in the configured mode
+     */
+    public static ThreadFactory factory(String name) {
+        if (effectiveMode() == THREAD_MODE.VIRTUAL) {
+            try {
+                return (ThreadFactory) OF_VIRTUAL.invoke(name + "-", (long) THREAD_COUNTER.getAndIncrement());
+            } catch (Throwable e) {
+                throw new IllegalStateException("Could not create a virtual thread factory", e);
+            }
+        }
+
+        return task -> new Thread(task, name + "-" + THREAD_COUNTER.getAndIncrement());
+    }
+
+    /**
+     * Resolves {@code Thread.ofVirtual().name(prefix, start).factory()} as a single method handle taking the prefix and
+     * start, or returns {@code null} if the running JVM has no virtual threads.
+     */
+    private static MethodHandle lookupOfVirtual() {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            MethodHandle create = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtual));
+            MethodHandle name = lookup.findVirtual(ofVirtual, "name",
+                    MethodType.methodType(ofVirtual, String.class, long.class));
+            MethodHandle factory = lookup.findVirtual(builder, "factory", MethodType.methodType(ThreadFactory.class));
+
+            // factory(name(ofVirtual(), prefix, start))
+            MethodHandle named = MethodHandles.collectArguments(name, 0, create);
+            return MethodHandles.filterReturnValue(named, factory.asType(MethodType.methodType(ThreadFactory.class, ofVirtual)));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
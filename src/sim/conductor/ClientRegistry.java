@@ -0,0 +1,156 @@
+package sim.conductor;
+
+import sim.client.Client;
+import sim.conductor.comms.ClientHandler;
+import sim.conductor.comms.WorkerHandler;
+import sim.log.Log;
+import sim.metrics.TaskTable;
+import sim.task.Task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Knows the {@link ClientHandler} of every connected {@link Client} and routes completed tasks straight to them. A
+ * {@link WorkerHandler} that receives completed tasks hands them to {@link #route(List)} on its own thread, which puts
+ * them on the outbound path of the client they belong to and hands back the {@link CreditController} credits they were
+ * holding. There is no single thread or lock that every completion has to pass through: lookups go through a
+ * {@link ConcurrentHashMap}, and completions for different clients never wait for each other.
+ * <p>
+ * A client that disconnects is retired: completed tasks that still arrive for it are dropped, but their credits are
+ * handed back all the same. Once none of its tasks are outstanding anymore, the client is forgotten. A client that
+ * reattaches before then takes the place of its earlier connection, and its completed tasks are returned to it again.
+ */
+public class ClientRegistry {
+
+    private final Map<Integer, ClientHandler> clients = new ConcurrentHashMap<>();
+    private final CreditController creditController;
+    private TaskTable taskTable;
+
+    /**
+     * @param creditController the controller that grants clients their credits and takes them back as tasks return
+     */
+    public ClientRegistry(CreditController creditController) {
+        this.creditController = creditController;
+    }
+
+    /**
+     * Registers a client whose handler has been started and grants it its initial credits.
+     * @param handler the handler of the connected client
+     */
+    public void register(ClientHandler handler) {
+        register(handler, 0);
+    }
+
+    /**
+     * Registers a client that reattaches to tasks the Conductor already holds, and grants it the rest of its window. The
+     * handler replaces the one of the client's earlier connection, if the Conductor still knows it.
+     * @param handler the handler of the reconnected client
+     * @param outstanding how many of the client's tasks the Conductor already holds
+     */
+    public void register(ClientHandler handler, int outstanding) {
+        clients.put(handler.getComponentID().refID(), handler);
+        creditController.open(handler, outstanding);
+    }
+
+    /**
+     * Returns completed tasks to the clients they belong to. Tasks of the same client are returned together.
+     * @param completed tasks that have just been completed, possibly of several clients
+     */
+    public void route(List<Task> completed) {
+        int clientID = completed.get(0).clientID();
+        boolean sameClient = true;
+        for (Task task : completed) {
+            if (task.clientID() != clientID) {
+                sameClient = false;
+                break;
+            }
+        }
+
+        if (sameClient) {
+            routeTo(clientID, completed);
+            return;
+        }
+
+        Map<Integer, List<Task>> perClient = new HashMap<>();
+        for (Task task : completed)
+            perClient.computeIfAbsent(task.clientID(), id -> new ArrayList<>()).add(task);
+
+        perClient.forEach(this::routeTo);
+    }
+
+    private void routeTo(int clientID, List<Task> completed) {
+        ClientHandler handler = clients.get(clientID);
+        if (handler == null) {
+            Log.warn("CONDUCTOR: Dropped %d completed tasks of unknown client %d", completed.size(), clientID);
+            return;
+        }
+
+        if (handler.isConnected())
+            handler.sendTasks(completed);
+
+        else Log.info("CONDUCTOR: Dropped %d completed tasks, client %d has disconnected", completed.size(), clientID);
+
+        if (!creditController.release(handler, completed.size()))
+            drop(handler);
+    }
+
+    /**
+     * Hands back the credits of tasks that a reattached client sent again, although the Conductor already held them.
+     * @param handler the handler of the client
+     * @param count how many tasks were left out
+     */
+    public void refund(ClientHandler handler, int count) {
+        if (!creditController.release(handler, count))
+            drop(handler);
+    }
+
+    /**
+     * Retires a client that has disconnected. It stays known until all of its outstanding tasks have come back, so that
+     * their credits can still be handed back.
+     * @param handler the handler of the disconnected client
+     */
+    public void retire(ClientHandler handler) {
+        boolean outstanding = taskTable != null
+                ? creditController.close(handler, taskTable.pending(handler.getComponentID().refID()))
+                : creditController.close(handler);
+        if (!outstanding)
+            drop(handler);
+    }
+
+    /**
+     * Forgets a client, unless it has reattached over a newer connection in the meantime.
+     */
+    private void drop(ClientHandler handler) {
+        int clientID = handler.getComponentID().refID();
+        if (clients.remove(clientID, handler) && taskTable != null)
+            taskTable.forget(clientID);
+    }
+
+    /**
+     * Sets the {@link TaskTable} that tells how many tasks of a retired client are still outstanding, and that the tasks
+     * of forgotten clients are removed from.
+     * @param taskTable the Conductor's TaskTable
+     */
+    public void setTaskTable(TaskTable taskTable) {
+        this.taskTable = taskTable;
+    }
+
+    /**
+     * @param clientID the ID of a client
+     * @return the handler of the client, or {@code null} if it is not connected and has no outstanding tasks
+     */
+    public ClientHandler get(int clientID) {
+        return clients.get(clientID);
+    }
+
+    /**
+     * @return how many clients are known, including disconnected ones whose tasks are still outstanding
+     */
+    public int size() {
+        return clients.size();
+    }
+}
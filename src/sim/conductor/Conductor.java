@@ -1,61 +1,140 @@
 package sim.conductor;
 
 import sim.client.Client;
+import sim.comms.Connection;
+import sim.comms.MemoryConnection;
 import sim.comms.Receiver;
+import sim.comms.SocketConnection;
+import sim.comms.wire.BinaryWireCodec;
+import sim.comms.wire.Handshake;
+import sim.comms.wire.Message;
+import sim.comms.wire.WireCodec;
+import sim.comms.wire.WireCodecs;
 import sim.component.ComponentID;
 import sim.conductor.comms.ClientHandler;
 import sim.conductor.comms.WorkerHandler;
+import sim.concurrent.Threads;
+import sim.conductor.nio.NioServer;
+import sim.conductor.scheduling.Dispatcher;
+import sim.conductor.scheduling.SchedulingStrategies;
+import sim.conductor.scheduling.SchedulingStrategy;
+import sim.conductor.wal.TaskLog;
+import sim.config.Config;
+import sim.log.Log;
+import sim.metrics.LifecycleMetrics;
+import sim.metrics.TaskTable;
 import sim.task.TASK_TYPE;
 import sim.task.Task;
 import sim.worker.Worker;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import static sim.component.COMPONENT_TYPE.CLIENT;
-import static sim.task.TASK_TYPE.A;
 
 /**
  * The Conductor is the hub of the simulation. ALl components connect to the Conductor to send and receive tasks. It is
  * therefore the responsibility of this class to conduct the event flow of the simulation. In order to achieve this in
  * an asynchronous manner, the Conductor heavily leverages multithreading.
  * <p>
- * The threads that enable this behavior are: {@link ComponentListener}, and local ExecutorService fields named: assignmentService and
- * updateService. The assignmentService executes the main function of the conductor. Using its algorithm, the conductor decides which
- * {@link sim.worker.Worker} is assigned what task. The updateService is constantly getting completed tasks from workers and sending them
- * back to the appropriate {@link sim.client.Client}.
+ * The threads that enable this behavior are: {@link ComponentListener}, and a local ExecutorService field named
+ * assignmentService. The assignmentService runs the {@link Dispatcher}, the main function of the conductor. Using its
+ * {@link SchedulingStrategy}, selected by {@link Config#scheduler()}, the conductor decides which
+ * {@link sim.worker.Worker} is assigned what task. Completed tasks are sent back to the appropriate
+ * {@link sim.client.Client} by the WorkerHandler that receives them, without passing through a thread of the conductor.
  * <p>
- * In order to know which Worker and Client to communicate with, the Conductor maintains a collection of ClientHandlers
- * and employs a {@link WorkerTracker} to keep track of WorkerHandler, making use of their componentIDs to know which
- * specific Client or Worker to communicate to.
+ * In order to know which Worker and Client to communicate with, the Conductor keeps its ClientHandlers in a
+ * {@link ClientRegistry} and employs a {@link WorkerTracker} to keep track of WorkerHandler, making use of their
+ * componentIDs to know which specific Client or Worker to communicate to.
+ * <p>
+ * The amount of tasks the Conductor holds is bounded by a {@link CreditController}: clients only send tasks they have
+ * been granted credits for, see {@link Config#maxPending()} and {@link Config#clientWindow()}.
+ * <p>
+ * Every task in flight is tracked in a {@link TaskTable}, which records how long tasks wait, are dispatched, executed and
+ * returned. The resulting histograms are available through JMX, see {@link LifecycleMetrics}.
+ * <p>
+ * Tasks sent to a worker are leased to it in a {@link LeaseTable}. The leaseService checks the leases periodically and
+ * gives up on workers that are overdue by more than {@link Config#leaseMillis()}; the tasks of lost workers are
+ * dispatched again. It also hedges tasks that straggle past {@link Config#hedgePercentile()}.
+ * <p>
+ * With {@link Config#walDir()} set, the Conductor is durable: every task it accepts, assigns and completes is recorded
+ * in a {@link TaskLog}. A Conductor restarted on the same directory recovers the tasks that were not completed yet and
+ * holds them for their client. Once a client reconnects under the same ID, its recovered tasks are dispatched again,
+ * ahead of every waiting task, and their completions are returned to it as usual. The tasks of a client that does not
+ * reattach within {@link Config#walReattachMillis()} are given up on, so that the log does not keep them forever.
+ * <p>
+ * A client may also reattach to a Conductor that kept running. It then takes over the credits of its earlier connection
+ * and the completions of its tasks, and the tasks it sends again are only dispatched if the {@link TaskTable} shows that
+ * they were never received, or were completed and may not have made it back.
  */
 public class Conductor {
 
     private final ServerSocket server;
+    private final WireCodec codec;
+    private final NioServer nioServer;
     private final ComponentListener componentListener = new ComponentListener();
     private final WorkerTracker workerTracker = new WorkerTracker();
-    private final Map<Integer, ClientHandler> clientHandlerMap = Collections.synchronizedMap(new HashMap<>());
-    private final BlockingQueue<Task> collectedTasks = new ArrayBlockingQueue<>(100);
-    private final BlockingQueue<Task> completedTasks = new ArrayBlockingQueue<>(100);
-    private final ExecutorService assignmentService = Executors.newFixedThreadPool(2);
-    private final ExecutorService updateService = Executors.newFixedThreadPool(1);
+    private final TaskTable taskTable = new TaskTable();
+    private final CreditController creditController = new CreditController(Config.maxPending(), Config.clientWindow());
+    private final ClientRegistry clientRegistry = new ClientRegistry(creditController);
+    private final ExecutorService assignmentService = Threads.newFixedThreadPool(1, "conductor-assignment");
+    private final ExecutorService leaseService = Threads.newFixedThreadPool(1, "conductor-leases");
+    private final Dispatcher dispatcher = new Dispatcher(SchedulingStrategies.defaultStrategy(), workerTracker);
+    private final LeaseTable leaseTable = new LeaseTable(dispatcher, taskTable.histograms());
+    private final Map<Integer, List<Task>> recoveredTasks = new ConcurrentHashMap<>();
+    private TaskLog taskLog;
 
     /**
      * @param serverSocket the server socket that all components will use to connect and communicate to
      */
     public Conductor(ServerSocket serverSocket) {
+        this(serverSocket, WireCodecs.defaultCodec());
+    }
+
+    /**
+     * Creates a Conductor in blocking mode: every connected component is served by its own sender and receiver threads.
+     * @param serverSocket the server socket that all components will use to connect and communicate to
+     * @param codec the {@link WireCodec} that every connecting component is expected to speak
+     */
+    public Conductor(ServerSocket serverSocket, WireCodec codec) {
         this.server = serverSocket;
+        this.codec = codec;
+        this.nioServer = null;
+    }
+
+    /**
+     * Creates a Conductor in non-blocking mode: all connected components are served by a fixed amount of event loops
+     * and always speak the binary wire protocol.
+     * @param serverChannel the bound server channel that all components will use to connect and communicate to
+     * @param eventLoops the amount of event loop threads that serve connected components
+     * @throws IOException if the event loops cannot be created
+     */
+    public Conductor(ServerSocketChannel serverChannel, int eventLoops) throws IOException {
+        this.server = serverChannel.socket();
+        this.codec = new BinaryWireCodec();
+        this.nioServer = new NioServer(serverChannel, eventLoops, this::establish);
+    }
+
+    /**
+     * Creates a Conductor without a server socket. It only serves components in the same JVM, which connect through
+     * {@link #connectInMemory()}.
+     */
+    public Conductor() {
+        this.server = null;
+        this.codec = WireCodecs.defaultCodec();
+        this.nioServer = null;
     }
 
     /**
      * This class will listen for clients and workers that are looking to connect to the given server socket. Upon establishing a connection,
-     * a {@link ClientHandler} or a {@link WorkerHandler} will be created and placed within the {@link Conductor}s Map
-     * of clients or the Conductors {@link WorkerTracker}.
+     * a {@link ClientHandler} or a {@link WorkerHandler} will be created and registered with the Conductors
+     * {@link ClientRegistry} or the Conductors {@link WorkerTracker}.
      */
     private class ComponentListener extends Thread implements Receiver {
 
@@ -74,163 +153,201 @@ public class Conductor {
             {
                 try {
                     Socket incomingComponentSocket = server.accept();
-                    ObjectInputStream objIn = new ObjectInputStream(incomingComponentSocket.getInputStream());
-                    ComponentID componentID = (ComponentID) objIn.readObject();
-
-                    if (componentID.component_type() == CLIENT) {
-                        establishClientHandler(incomingComponentSocket, objIn, componentID);
-                    }
+                    greet(new SocketConnection(incomingComponentSocket, codec));
 
-                    else {
-                        establishWorkerHandler(incomingComponentSocket, objIn, componentID);
-                    }
-
-                } catch (IOException | ClassNotFoundException e) {
+                } catch (IOException e) {
                     e.printStackTrace();
                 }
             }
         }
+    }
 
-        /**
-         * Establishes a {@link WorkerHandler} that will assume responsibility for communicating to the connecting
-         * {@link Worker} from this point forward.
-         * @param incomingComponentSocket the connecting component socket
-         * @param objIn the object input stream used to receive component information upon connection
-         * @param componentID the components {@link ComponentID} used to identify the components Handler
-         * @throws IOException any of the usual I/O exceptions
-         * @throws ClassNotFoundException if the received object is not an instance of {@link TASK_TYPE}
-         */
-        private void establishWorkerHandler(Socket incomingComponentSocket, ObjectInputStream objIn, ComponentID componentID) throws IOException, ClassNotFoundException {
-            System.out.println("CONDUCTOR: COMPONENT RECEIVED " + componentID + " connected...");
-            TASK_TYPE workerType = (TASK_TYPE) objIn.readObject();
-            WorkerHandler workerHandler = new WorkerHandler(componentID, incomingComponentSocket,
-                    workerType, objIn);
-            workerHandler.setCompletedTaskQueue(completedTasks);
-            workerTracker.add(workerHandler);
-            workerHandler.register(workerTracker);
-            workerHandler.start();
-        }
+    /**
+     * Reads the handshake of a newly connected component and establishes its handler.
+     * @param connection the connection to the connecting component
+     * @throws IOException if the handshake cannot be read, or the component sent something else first
+     */
+    private void greet(Connection connection) throws IOException {
+        Message greeting = connection.reader().read();
 
-        /**
-         * Establishes a {@link ClientHandler} that will assume responsibility for communicating to the connecting
-         * {@link Client} from this point forward.
-         * @param incomingComponentSocket the connecting component socket
-         * @param objIn the object input stream used to receive component information upon connection
-         * @param componentID the components {@link ComponentID} used to identify the components Handler
-         */
-        private void establishClientHandler(Socket incomingComponentSocket, ObjectInputStream objIn, ComponentID componentID) {
-            System.out.println("CONDUCTOR: " + componentID + " connected...");
-            ClientHandler clientHandler = new ClientHandler(componentID, incomingComponentSocket, objIn);
-            clientHandler.setCollections(collectedTasks);
-            clientHandlerMap.put(componentID.refID(), clientHandler);
-            clientHandler.start();
+        if (!(greeting instanceof Handshake handshake)) {
+            connection.close();
+            throw new ProtocolException("Expected a handshake, received " + greeting);
         }
+
+        establish(handshake, connection);
     }
 
     /**
-     * Starts all contained threads and thread-pools: {@link ComponentListener}, the assignmentService and the updateService.
+     * Connects a component that runs in the same JVM as this Conductor through a {@link MemoryConnection}: messages are
+     * handed over as references through bounded lock-free channels, without sockets or serialization. The component
+     * then talks to the Conductor exactly as it would over TCP, starting with its handshake.
+     * @return the component's end of the connection
      */
-    public void begin() {
-        componentListener.start();
-        assignmentService.execute(() -> {
-            try {
-                Task receivedTask;
-                while ((receivedTask = collectedTasks.take()) != null) {
-                    WorkerHandler assignedWorker = assignWorker(receivedTask); // Blocking call
-                    System.out.printf("CONDUCTOR: Worker(%d) was assigned %s\n", assignedWorker.getComponentID().refID(), receivedTask);
-                    assignedWorker.sendTask(receivedTask);
-                }
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-                System.out.println("Conductor was interrupted");
-            }
-        });
-        updateService.execute(() -> {
+    public Connection connectInMemory() {
+        MemoryConnection connection = MemoryConnection.pair(Config.channelCapacity());
+        Threads.start("conductor-greeter", () -> {
             try {
-                Task completedTask;
-                while ((completedTask = completedTasks.take()) != null) {
-                    clientHandlerMap.get(completedTask.clientID()).sendTask(completedTask);
-                }
-            } catch (InterruptedException e) {
+                greet(connection.peer());
+            } catch (IOException e) {
                 e.printStackTrace();
             }
         });
+
+        return connection;
     }
 
     /**
-     * This is the algorithm of the Conductor. Based on certain variables, the method will choose the best Worker to
-     * work on the given task. (If only one type of Worker is connected to the Conductor, then a Worker of that type 
-     * must be chosen).
-     * <p>
-     * Since a Worker whose type matches the type of a given task takes only 2 seconds to complete, while a
-     * Worker whose type doesn't match the type of a given task takes 10 seconds to complete the task, the ideal choice
-     * of Worker will be of a similar type to the given task. However, if no such Worker is available at the present
-     * moment, a Worker of a different type may be chosen under the following circumstances:
-     * <p>
-     * 1) there are a sufficient number of tasks remaining so that all the Workers of the matching type would be occupied during the extra time that
-     * the Worker whose type doesn't match can complete the task,
-     * <p>
-     * 2) all of these tasks are of the same type as the given task,
-     * <p>
-     * 3) a Worker of a different type is presently available. In the event that any of these conditions is false, the 
-     * method will wait until a Worker of a similar type to the given task becomes available.
-     * @param task the task that requires assignment
-     * @return a WorkerHandler that will handle the communication with the chosen worker meant to complete the given task
-     */
-    private WorkerHandler assignWorker(Task task) {
-
-        if (!workerTracker.isAConnected())
-            return workerTracker.getBHandler();
-        
-        if (!workerTracker.isBConnected())
-            return workerTracker.getAHandler();
-        
-        if (task.type() == A) {
-            if (workerTracker.isAFree())
-                return workerTracker.getAHandler();
-
-            if (collectedTasks.size() > 5 * workerTracker.aCount() && areNextSame(task.type(), workerTracker.aCount())) {
-                if (workerTracker.isBFree())
-                    return workerTracker.getBHandler();
-            }
-            
-            System.out.println("CONDUCTOR: Waiting on Worker of type A");
-            return workerTracker.getAHandler();
+     * Creates the appropriate handler for a component that has just completed its handshake.
+     * @param handshake the handshake the connecting component sent
+     * @param connection the connection to the connecting component
+     */
+    private void establish(Handshake handshake, Connection connection) {
+        if (handshake.componentID().component_type() == CLIENT) {
+            establishClientHandler(connection, handshake.componentID());
         }
 
         else {
-            if (workerTracker.isBFree())
-                return workerTracker.getBHandler();
+            establishWorkerHandler(connection, handshake);
+        }
+    }
 
-            if (collectedTasks.size() > 5 * workerTracker.bCount() && areNextSame(task.type(), workerTracker.bCount())) {
-                if (workerTracker.isAFree())
-                    return workerTracker.getAHandler();
-            }
-            
-            System.out.println("CONDUCTOR: Waiting on Worker of type B");
-            return workerTracker.getBHandler();
+    /**
+     * Establishes a {@link WorkerHandler} that will assume responsibility for communicating to the connecting
+     * {@link Worker} from this point forward.
+     * @param connection the connection to the connecting component
+     * @param handshake the handshake the connecting worker sent, announcing its {@link TASK_TYPE} and dispatch mode
+     */
+    private void establishWorkerHandler(Connection connection, Handshake handshake) {
+        Log.info("CONDUCTOR: COMPONENT RECEIVED %s connected...", handshake.componentID());
+        WorkerHandler workerHandler = new WorkerHandler(handshake, connection);
+        workerHandler.setClientRegistry(clientRegistry);
+        workerHandler.setLeaseTable(leaseTable);
+        workerHandler.setTaskTable(taskTable);
+        workerHandler.setTaskLog(taskLog);
+        workerTracker.add(workerHandler);
+        workerHandler.register(workerTracker);
+        workerHandler.start();
+    }
+
+    /**
+     * Establishes a {@link ClientHandler} that will assume responsibility for communicating to the connecting
+     * {@link Client} from this point forward.
+     * @param connection the connection to the connecting component
+     * @param componentID the components {@link ComponentID} used to identify the components Handler
+     */
+    private void establishClientHandler(Connection connection, ComponentID componentID) {
+        Log.info("CONDUCTOR: %s connected...", componentID);
+        ClientHandler clientHandler = new ClientHandler(componentID, connection);
+        clientHandler.setDispatcher(dispatcher);
+        clientHandler.setClientRegistry(clientRegistry);
+        clientHandler.setTaskTable(taskTable);
+        clientHandler.setTaskLog(taskLog);
+        clientHandler.start();
+
+        // A client that reattaches while the Conductor kept running takes over the tasks it still holds
+        List<Task> recovered = recoveredTasks.remove(componentID.refID());
+        if (recovered != null)
+            taskTable.received(recovered);
+        clientRegistry.register(clientHandler, taskTable.pending(componentID.refID()));
+        if (recovered == null)
+            return;
+
+        // Resubmitted tasks are put ahead of the waiting ones one at a time, so the oldest has to come last
+        List<Task> newestFirst = new ArrayList<>(recovered);
+        Collections.reverse(newestFirst);
+        dispatcher.resubmitAll(newestFirst);
+        Log.info("CONDUCTOR: Client %d reattached to %d recovered tasks", componentID.refID(), recovered.size());
+    }
+
+    /**
+     * Starts all contained threads and thread-pools: {@link ComponentListener} (or the {@link NioServer} in non-blocking
+     * mode, or neither without a server socket), the assignmentService and the leaseService. In durable mode, the
+     * {@link TaskLog} is opened and recovered first.
+     */
+    public void begin() {
+        if (Config.walDir() != null)
+            recover();
+
+        workerTracker.register(dispatcher);
+        clientRegistry.setTaskTable(taskTable);
+        LifecycleMetrics.register(taskTable);
+        if (nioServer != null)
+            nioServer.start();
+
+        else if (server != null)
+            componentListener.start();
+
+        assignmentService.execute(dispatcher);
+        if (leaseTable.checkPeriodMillis() > 0)
+            leaseService.execute(this::checkLeases);
+    }
+
+    /**
+     * Opens the {@link TaskLog} in {@link Config#walDir()} and holds the tasks it recovers until their clients reattach.
+     */
+    private void recover() {
+        long startedAt = System.nanoTime();
+        try {
+            taskLog = TaskLog.open();
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot open the write-ahead log in " + Config.walDir(), e);
         }
+
+        recoveredTasks.putAll(taskLog.recovered());
+        if (recoveredTasks.isEmpty())
+            return;
+
+        int recovered = recoveredTasks.values().stream().mapToInt(List::size).sum();
+        Log.info("CONDUCTOR: Recovered %d tasks of %d clients in %d ms, %d of them had been sent to a worker. Waiting " +
+                        "for their clients to reattach...", recovered, recoveredTasks.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), taskLog.recoveredInFlight());
+        if (Config.walReattachMillis() > 0)
+            Threads.start("conductor-wal-expiry", this::expireRecovered);
     }
 
     /**
-     * Method to be internally used by the Conductor. Tests to see if the next specified number of tasks in the queue 
-     * are of the same type as the given task type.
-     * @param taskType the task type to be compared
-     * @param workersOfSimilarType the number of workers of a similar type to the taskType
-     * @return true if the next specified number of tasks in the queue are of the same type as the task type, otherwise false
+     * Gives up on the recovered tasks of clients that have not reattached within {@link Config#walReattachMillis()}.
+     * Their tasks are discarded from the {@link TaskLog}, whose segments can then be compacted. A client that reattaches
+     * after all has its tasks accepted anew when it sends them again.
      */
-    private boolean areNextSame(TASK_TYPE taskType, int workersOfSimilarType) {
-        AtomicBoolean result = new AtomicBoolean(true);
-        collectedTasks.stream().limit(5L * workersOfSimilarType).forEachOrdered(futureTask -> {
-            if (futureTask.type() != taskType)
-                result.set(false);
-        });
+    private void expireRecovered() {
+        long reattachMillis = Config.walReattachMillis();
+        try {
+            Thread.sleep(reattachMillis);
+        } catch (InterruptedException e) {
+            return;
+        }
 
-        return result.get();
+        for (Integer clientID : List.copyOf(recoveredTasks.keySet())) {
+            List<Task> expired = recoveredTasks.remove(clientID);
+            if (expired == null)
+                continue;
+
+            taskLog.discard(expired);
+            Log.warn("CONDUCTOR: Gave up on %d recovered tasks of client %d, it did not reattach within %d ms",
+                    expired.size(), clientID, reattachMillis);
+        }
+    }
+
+    /**
+     * Gives up on overdue workers and hedges straggling tasks, every {@link LeaseTable#checkPeriodMillis()}.
+     */
+    private void checkLeases() {
+        long periodMillis = leaseTable.checkPeriodMillis();
+        try {
+            while (true) {
+                Thread.sleep(periodMillis);
+                leaseTable.check();
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
     }
-    
+
     /**
      * Initiate the collection of clients and retrieval and processing of their tasks
+     * Whether the Conductor runs in blocking or non-blocking mode is decided by {@link Config#ioMode()}.
      * @param args list of CL arguments. Should only contain a port number.
      * @throws IOException if an I/O error occurs when opening the soon-to-be-created ServerSocket
      */
@@ -242,7 +359,23 @@ public class Conductor {
             System.exit(1);
         }
 
-        Conductor conductor = new Conductor(new ServerSocket(Integer.parseInt(args[0])));
+        Conductor conductor = open(Integer.parseInt(args[0]));
         conductor.begin();
     }
+
+    /**
+     * Opens a Conductor on the given port in the I/O mode selected by {@link Config#ioMode()}.
+     * @param port the port that components will connect to
+     * @return a Conductor that has not yet begun
+     * @throws IOException if the port cannot be bound
+     */
+    public static Conductor open(int port) throws IOException {
+        if (Config.ioMode() == IO_MODE.NIO) {
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            return new Conductor(serverChannel, Config.eventLoops());
+        }
+
+        return new Conductor(new ServerSocket(port));
+    }
 }
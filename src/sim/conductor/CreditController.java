@@ -0,0 +1,213 @@
+package sim.conductor;
+
+import sim.client.Client;
+import sim.comms.wire.Credit;
+import sim.conductor.comms.ClientHandler;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The CreditController bounds the amount of tasks the {@link Conductor} holds. Every connected {@link Client} may only
+ * send as many tasks as it has been granted {@link Credit}s for. A credit is handed back once the task it was spent on
+ * has been returned to its client.
+ * <p>
+ * Credits come out of a global budget of headroom. Each client may hold at most a window's worth of credits, counting
+ * the tasks it has outstanding. When the budget runs dry, clients that are short of their window wait in line, and
+ * every credit that is handed back goes to the client at the front of the line. Heavy producers are therefore slowed
+ * down instead of overflowing the Conductor, and all clients get their turn.
+ * <p>
+ * Accounts belong to clients, not to their connections: a client that reattaches under the same ID takes over the
+ * account of its earlier connection, along with the credits of the tasks that are still outstanding on it.
+ */
+public class CreditController {
+
+    private final int window;
+    private final Map<Integer, Account> accounts = new HashMap<>();
+    private final ArrayDeque<Account> waiting = new ArrayDeque<>();
+    private int headroom;
+
+    /**
+     * The credits of a single client.
+     */
+    private static class Account {
+        ClientHandler handler;
+        int outstanding;
+        boolean waiting;
+        boolean closed;
+
+        Account(ClientHandler handler) {
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * @param capacity how many tasks the Conductor is willing to hold across all clients
+     * @param window how many tasks a single client may have outstanding
+     */
+    public CreditController(int capacity, int window) {
+        if (capacity < 1 || window < 1)
+            throw new IllegalArgumentException("Capacity and window must be positive");
+
+        this.headroom = capacity;
+        this.window = window;
+    }
+
+    /**
+     * Grants a newly connected client its initial credits, as far as the global headroom allows.
+     * @param handler the handler of the connected client
+     */
+    public void open(ClientHandler handler) {
+        open(handler, 0);
+    }
+
+    /**
+     * Grants a client that reattaches to tasks it already has outstanding the rest of its window, as far as the global
+     * headroom allows. Its outstanding tasks count against the headroom as if their credits had been granted.
+     * <p>
+     * If the client still has an account, because the Conductor kept running while it was away, the account is moved to
+     * the new handler. Credits granted over the lost connection are void: the account only keeps the outstanding tasks,
+     * and the rest of its credits return to the headroom before the client is granted new ones.
+     * @param handler the handler of the connected client
+     * @param outstanding how many of the client's tasks the Conductor already holds
+     */
+    public void open(ClientHandler handler, int outstanding) {
+        int granted;
+        synchronized (this) {
+            Account account = accounts.computeIfAbsent(clientID(handler), id -> new Account(handler));
+            headroom += account.outstanding - outstanding;
+            account.handler = handler;
+            account.closed = false;
+            account.outstanding = outstanding;
+            granted = take(account, window - outstanding);
+            if (account.outstanding < window && !account.waiting)
+                enqueue(account);
+        }
+
+        grant(handler, granted);
+    }
+
+    /**
+     * Hands back the credits of tasks that have been returned to their client, and passes each of them on to the client
+     * that has been waiting the longest. Every client receives at most one {@link Credit} message per call. A client never
+     * hands back more credits than it has outstanding.
+     * @param handler the handler of the client that the tasks were returned to, or of an earlier connection of it
+     * @param count how many tasks were returned
+     * @return false if the client has disconnected and none of its tasks are outstanding anymore, true otherwise
+     */
+    public boolean release(ClientHandler handler, int count) {
+        Map<ClientHandler, Integer> grants = new LinkedHashMap<>();
+        boolean known;
+        synchronized (this) {
+            Account account = accounts.get(clientID(handler));
+            if (account == null)
+                return false;
+
+            int returned = Math.min(count, account.outstanding);
+            account.outstanding -= returned;
+            headroom += returned;
+            known = !account.closed || account.outstanding > 0;
+            if (!known)
+                accounts.remove(clientID(handler));
+
+            else if (!account.closed && !account.waiting)
+                enqueue(account);
+
+            passOn(grants);
+        }
+
+        grants.forEach(this::grant);
+        return known;
+    }
+
+    /**
+     * Stops granting credits to a client that has disconnected. Credits for its tasks that are still in flight return to
+     * the global headroom as those tasks complete. A handler whose client has reattached over a newer connection since
+     * leaves the account alone.
+     * @param handler the handler of the disconnected client
+     * @return true if some of the client's tasks are still outstanding, false otherwise
+     */
+    public boolean close(ClientHandler handler) {
+        return close(handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stops granting credits to a client that has disconnected, of whose tasks the Conductor still holds the given
+     * amount. Credits that were granted to the client but never spent return to the global headroom right away, and are
+     * passed on to the clients waiting for them.
+     * @param handler the handler of the disconnected client
+     * @param outstanding how many of the client's tasks the Conductor still holds
+     * @return true if some of the client's tasks are still outstanding, false otherwise
+     */
+    public boolean close(ClientHandler handler, int outstanding) {
+        Map<ClientHandler, Integer> grants = new LinkedHashMap<>();
+        boolean known;
+        synchronized (this) {
+            Account account = accounts.get(clientID(handler));
+            if (account == null || account.handler != handler)
+                return false;
+
+            int unspent = Math.max(0, account.outstanding - outstanding);
+            account.outstanding -= unspent;
+            headroom += unspent;
+            account.closed = true;
+            known = account.outstanding > 0;
+            if (!known)
+                accounts.remove(clientID(handler));
+
+            passOn(grants);
+        }
+
+        grants.forEach(this::grant);
+        return known;
+    }
+
+    /**
+     * @return how many more tasks the Conductor could accept across all clients
+     */
+    public synchronized int headroom() {
+        return headroom;
+    }
+
+    private static int clientID(ClientHandler handler) {
+        return handler.getComponentID().refID();
+    }
+
+    private int take(Account account, int wanted) {
+        int granted = Math.max(0, Math.min(wanted, headroom));
+        headroom -= granted;
+        account.outstanding += granted;
+        return granted;
+    }
+
+    /**
+     * Hands out the available headroom one credit at a time, to the clients in the order they have been waiting.
+     * @param grants collects how many credits each client is granted
+     */
+    private void passOn(Map<ClientHandler, Integer> grants) {
+        while (headroom > 0 && !waiting.isEmpty()) {
+            Account next = waiting.pollFirst();
+            next.waiting = false;
+            if (next.closed)
+                continue;
+
+            take(next, 1);
+            if (next.outstanding < window)
+                enqueue(next);
+
+            grants.merge(next.handler, 1, Integer::sum);
+        }
+    }
+
+    private void enqueue(Account account) {
+        account.waiting = true;
+        waiting.addLast(account);
+    }
+
+    private void grant(ClientHandler handler, int amount) {
+        if (amount > 0)
+            handler.grant(new Credit(amount));
+    }
+}
@@ -0,0 +1,13 @@
+package sim.conductor;
+
+import sim.conductor.nio.NioServer;
+
+/**
+ * The ways in which a {@link Conductor} can serve its connected components. In BLOCKING mode every client and worker
+ * gets its own sender and receiver threads. In NIO mode a fixed amount of event loops, run by a {@link NioServer},
+ * serves every connection.
+ */
+public enum IO_MODE {
+    BLOCKING,
+    NIO
+}
@@ -0,0 +1,336 @@
+package sim.conductor;
+
+import sim.conductor.comms.WorkerHandler;
+import sim.conductor.scheduling.Dispatcher;
+import sim.config.Config;
+import sim.log.Log;
+import sim.metrics.Histogram;
+import sim.metrics.LIFECYCLE_STAGE;
+import sim.metrics.LifecycleHistograms;
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The table of tasks that have been assigned to a worker and not completed yet, keyed by client and task ID. Every
+ * entry is a lease: it names the {@link WorkerHandler} the task was sent to and the time by which the task is expected
+ * back, which is the expected completion of its work unit plus {@link Config#leaseMillis()}.
+ * <p>
+ * A task is only ever completed once. The first completion that arrives ends the lease and is passed on to the client;
+ * any later one, from a worker the task was taken away from, is suppressed and counted.
+ * <p>
+ * When a worker disconnects, every task it holds a lease on is handed back to the {@link Dispatcher}, which dispatches
+ * it again before any waiting task. A worker that lets a lease run out is treated as gone: see {@link #expire()}.
+ * Losing a worker therefore costs the re-execution of its tasks, instead of leaving their clients waiting forever.
+ * <p>
+ * With hedging enabled, a task that has been executing for longer than {@link Config#hedgePercentile()} percent of the
+ * tasks of its type took on a worker of that type is a straggler. The Dispatcher is asked to launch a speculative copy
+ * of it on another worker of the task's own type, if one is idle; see {@link #hedgeStragglers()}. The copy is leased
+ * alongside the original, whichever completes first wins, and the other one is discarded once it arrives.
+ */
+public class LeaseTable {
+
+    private static final TASK_TYPE[] TYPES = TASK_TYPE.values();
+    private static final long HEDGE_CHECK_MILLIS = 100;
+    private static final long MIN_HEDGE_SAMPLES = 20;
+
+    private final Map<Long, Lease> leases = new ConcurrentHashMap<>();
+    private final Dispatcher dispatcher;
+    private final LongSupplier clock;
+    private final long graceNanos;
+    private final LifecycleHistograms histograms;
+    private final double hedgePercentile;
+    private final AtomicLong reassigned = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+
+    /**
+     * A task, the worker it was sent to, when the worker is estimated to start executing it and the time by which it is
+     * expected back, all in nanoseconds, along with the lease of its speculative copy, if one has been launched.
+     */
+    private record Lease(Task task, WorkerHandler worker, long startsAt, long deadline, Lease hedge) {
+
+        Lease withHedge(Lease copy) {
+            return new Lease(task, worker, startsAt, deadline, copy);
+        }
+    }
+
+    /**
+     * Creates a table whose leases run on {@link System#nanoTime()} and last {@link Config#leaseMillis()} beyond the
+     * expected completion of their work unit, and which hedges stragglers past {@link Config#hedgePercentile()}.
+     * @param dispatcher the dispatcher that tasks of lost workers, and speculative copies, are handed to
+     * @param histograms the histograms that tell how long tasks usually take
+     */
+    public LeaseTable(Dispatcher dispatcher, LifecycleHistograms histograms) {
+        this(dispatcher, System::nanoTime, Config.leaseMillis(), histograms, Config.hedgePercentile());
+    }
+
+    /**
+     * @param dispatcher the dispatcher that tasks of lost workers, and speculative copies, are handed to
+     * @param nanoClock the monotonic clock, in nanoseconds, that deadlines are measured on; the same clock the
+     *                  {@link WorkerHandler}s estimate completions with
+     * @param leaseMillis how long past its expected completion a task may take; 0 to let tasks take as long as their
+     *                    worker stays connected
+     * @param histograms the histograms that tell how long tasks usually take
+     * @param hedgePercentile the percentile of the execution time of a task's type beyond which the task is hedged;
+     *                        0 to never hedge
+     */
+    public LeaseTable(Dispatcher dispatcher, LongSupplier nanoClock, long leaseMillis, LifecycleHistograms histograms,
+                      double hedgePercentile) {
+        this.dispatcher = dispatcher;
+        this.clock = nanoClock;
+        this.graceNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        this.histograms = histograms;
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    private static long key(Task task) {
+        return (long) task.clientID() << 32 | (task.taskID() & 0xFFFFFFFFL);
+    }
+
+    private static long costNanos(Task task, WorkerHandler worker) {
+        return TimeUnit.MILLISECONDS.toNanos(Config.taskMillis(task.type(), worker.getWorkerType()));
+    }
+
+    private long deadline(long expectedNanos) {
+        return graceNanos > 0 ? expectedNanos + graceNanos : Long.MAX_VALUE;
+    }
+
+    /**
+     * Leases the tasks of a work unit to the worker they have just been assigned to. The tasks of the unit are performed
+     * one after the other, after whatever the worker's slot was already busy with, so each task is estimated to start
+     * once the tasks ahead of it are expected to be done.
+     * @param unit the tasks of the work unit
+     * @param worker the handler of the worker
+     * @param expectedNanos when the worker is expected to complete the whole unit, on this table's clock
+     */
+    public void lease(List<Task> unit, WorkerHandler worker, long expectedNanos) {
+        long now = clock.getAsLong();
+        long deadline = deadline(expectedNanos);
+        long startsAt = expectedNanos;
+        for (Task task : unit)
+            startsAt -= costNanos(task, worker);
+
+        for (Task task : unit) {
+            leases.put(key(task), new Lease(task, worker, Math.max(now, startsAt), deadline, null));
+            startsAt += costNanos(task, worker);
+        }
+
+        // The worker may have disconnected while the unit was being assigned, after its leases were reclaimed
+        if (!worker.isConnected())
+            reclaim(worker);
+    }
+
+    /**
+     * Leases a speculative copy of a straggling task to another worker. Nothing is leased if the task has been
+     * completed or hedged in the meantime, or if the given worker is the one performing the original.
+     * @param task the straggling task
+     * @param worker the handler of the worker that would perform the copy
+     * @param expectedNanos when that worker is expected to complete the copy, on this table's clock
+     * @return true if the copy has been leased and should be sent, false otherwise
+     */
+    public boolean hedge(Task task, WorkerHandler worker, long expectedNanos) {
+        long startsAt = Math.max(clock.getAsLong(), expectedNanos - costNanos(task, worker));
+        Lease copy = new Lease(task, worker, startsAt, deadline(expectedNanos), null);
+        Lease hedgedLease = leases.computeIfPresent(key(task),
+                (key, lease) -> lease.hedge() == null && lease.worker() != worker ? lease.withHedge(copy) : lease);
+
+        if (hedgedLease == null || hedgedLease.hedge() != copy)
+            return false;
+
+        hedged.incrementAndGet();
+        if (!worker.isConnected())
+            reclaim(worker);
+
+        return true;
+    }
+
+    /**
+     * Ends the leases of tasks a worker has completed.
+     * @param unit the completed tasks
+     * @param worker the handler of the worker that completed them
+     * @return the tasks that were completed for the first time, in order; the others are suppressed
+     */
+    public List<Task> complete(List<Task> unit, WorkerHandler worker) {
+        List<Task> completed = null;
+        for (int i = 0; i < unit.size(); i++) {
+            Task task = unit.get(i);
+            Lease lease = leases.remove(key(task));
+            if (lease != null) {
+                if (lease.hedge() != null && lease.hedge().worker() == worker)
+                    hedgesWon.incrementAndGet();
+                if (completed != null)
+                    completed.add(task);
+                continue;
+            }
+
+            duplicates.incrementAndGet();
+            Log.trace("CONDUCTOR: Suppressed duplicate completion of %s", task);
+            if (completed == null)
+                completed = new ArrayList<>(unit.subList(0, i));
+        }
+
+        return completed == null ? unit : completed;
+    }
+
+    /**
+     * Takes every task leased to a worker that has disconnected away from it. Tasks with a speculative copy on another
+     * worker are left to that copy; the others are handed back to the dispatcher in the order they were due to start,
+     * so that they keep their order ahead of the waiting tasks.
+     * @param worker the handler of the disconnected worker
+     * @return how many tasks were handed back
+     */
+    public int reclaim(WorkerHandler worker) {
+        List<Lease> lost = new ArrayList<>();
+        leases.forEach((key, found) -> {
+            if (found.worker() != worker && (found.hedge() == null || found.hedge().worker() != worker))
+                return;
+
+            leases.computeIfPresent(key, (k, lease) -> {
+                if (lease.worker() == worker) {
+                    if (lease.hedge() != null)
+                        return lease.hedge(); // The copy carries on alone
+
+                    lost.add(lease);
+                    return null;
+                }
+
+                return lease.hedge() != null && lease.hedge().worker() == worker ? lease.withHedge(null) : lease;
+            });
+        });
+
+        if (lost.isEmpty())
+            return 0;
+
+        reassigned.addAndGet(lost.size());
+        Log.warn("CONDUCTOR: Dispatching %d tasks of Worker(%s) %d again", lost.size(), worker.getWorkerType(),
+                worker.getComponentID().refID());
+        // Resubmitted tasks are put ahead of the waiting ones one at a time, so the oldest has to come last
+        lost.sort(Comparator.comparingLong(Lease::startsAt).thenComparingInt(lease -> lease.task().taskID()).reversed());
+        dispatcher.resubmitAll(lost.stream().map(Lease::task).toList());
+        return lost.size();
+    }
+
+    /**
+     * Gives up on every worker that holds a lease past its deadline. The worker is disconnected, which reclaims all of
+     * its tasks. Meant to be called periodically, see {@link #checkPeriodMillis()}.
+     * @return how many workers were given up on
+     */
+    public int expire() {
+        if (graceNanos <= 0 || leases.isEmpty())
+            return 0;
+
+        long now = clock.getAsLong();
+        Set<WorkerHandler> expired = new HashSet<>();
+        for (Lease lease : leases.values()) {
+            if (lease.deadline() - now < 0)
+                expired.add(lease.worker());
+            if (lease.hedge() != null && lease.hedge().deadline() - now < 0)
+                expired.add(lease.hedge().worker());
+        }
+
+        for (WorkerHandler worker : expired)
+            worker.expire();
+
+        return expired.size();
+    }
+
+    /**
+     * Asks the dispatcher to hedge every task that has been executing for longer than the hedge percentile of the tasks
+     * of its type, as performed by workers of that type. Execution is measured from the estimated start of the task, so
+     * that tasks still waiting behind others on a busy or prefetching worker are not taken for stragglers. Until {@value #MIN_HEDGE_SAMPLES} such tasks have completed,
+     * their known cost, {@link Config#taskMillis(TASK_TYPE, TASK_TYPE)}, is used instead. Meant to be called periodically,
+     * see {@link #checkPeriodMillis()}.
+     * @return how many stragglers the dispatcher was asked to hedge
+     */
+    public int hedgeStragglers() {
+        if (hedgePercentile <= 0 || leases.isEmpty())
+            return 0;
+
+        long[] thresholds = new long[TYPES.length];
+        for (TASK_TYPE type : TYPES) {
+            Histogram execution = histograms.histogram(LIFECYCLE_STAGE.EXECUTION, type, true);
+            thresholds[type.ordinal()] = execution.count() < MIN_HEDGE_SAMPLES
+                    ? TimeUnit.MILLISECONDS.toNanos(Config.taskMillis(type, type))
+                    : execution.percentile(hedgePercentile);
+        }
+
+        long now = clock.getAsLong();
+        List<Task> stragglers = new ArrayList<>();
+        for (Lease lease : leases.values()) {
+            if (lease.hedge() == null && now - lease.startsAt() > thresholds[lease.task().type().ordinal()])
+                stragglers.add(lease.task());
+        }
+
+        if (!stragglers.isEmpty())
+            dispatcher.hedgeAll(stragglers);
+
+        return stragglers.size();
+    }
+
+    /**
+     * Checks for overdue workers and straggling tasks.
+     */
+    public void check() {
+        expire();
+        hedgeStragglers();
+    }
+
+    /**
+     * @return how often {@link #check()} should be called: four times per {@link Config#leaseMillis()}, and every
+     * {@value #HEDGE_CHECK_MILLIS} milliseconds with hedging enabled; 0 if neither is enabled
+     */
+    public long checkPeriodMillis() {
+        long period = graceNanos > 0 ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(graceNanos) / 4) : Long.MAX_VALUE;
+        if (hedgePercentile > 0)
+            period = Math.min(period, HEDGE_CHECK_MILLIS);
+
+        return period == Long.MAX_VALUE ? 0 : period;
+    }
+
+    /**
+     * @return how many tasks are leased to a worker right now
+     */
+    public int size() {
+        return leases.size();
+    }
+
+    /**
+     * @return how many tasks have been handed back to the dispatcher because their worker was lost
+     */
+    public long reassigned() {
+        return reassigned.get();
+    }
+
+    /**
+     * @return how many completions were suppressed because their task had already been completed
+     */
+    public long duplicates() {
+        return duplicates.get();
+    }
+
+    /**
+     * @return how many speculative copies of straggling tasks have been launched
+     */
+    public long hedged() {
+        return hedged.get();
+    }
+
+    /**
+     * @return how many speculative copies completed before their original
+     */
+    public long hedgesWon() {
+        return hedgesWon.get();
+    }
+}
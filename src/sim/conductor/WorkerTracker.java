@@ -2,123 +2,238 @@ package sim.conductor;
 
 
 import sim.conductor.comms.WorkerHandler;
+import sim.observer.Observable;
 import sim.observer.Observer;
+import sim.task.TASK_TYPE;
 import sim.task.Task;
 import sim.worker.Worker;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static sim.task.TASK_TYPE.A;
-
 /**
  * This class is used by the conductor to track all connected {@link Worker}s via their respective {@link WorkerHandler}.
- * Whenever a Worker of a specific type connects,a WorkerHandler is created, and it is added to the WorkerTracker and stored in a
- * {@link BlockingQueue} representing the connected Worker's worker type: A or B.
+ * Whenever a Worker of a specific type connects,a WorkerHandler is created, and it is added to the WorkerTracker and
+ * stored in a lock-free queue of free slots representing the connected Worker's worker type: A or B.
  * <p>
- * When a WorkerHandler is assigned a {@link Task} by the Conductor, it is removed form the internal blocking queue.
+ * When a WorkerHandler is assigned a {@link Task} by the Conductor, one of its entries is removed from the queue.
  * When that WorkerHandler completes its task, it notifies the WorkerTracker and in response the tracker returns it
- * within one of the Worker queues (depending on type, of course).
+ * within one of the Worker queues (depending on type, of course), and in turn notifies its own observers that a slot
+ * has become available.
+ * <p>
+ * Each entry in a queue stands for one free slot, so a WorkerHandler may sit in its queue more than once: a pushed worker
+ * is added once for every slot it has, and a worker in pull mode is added once for every task it asked for.
+ * <p>
+ * Taking and returning slots never takes a lock, so any amount of workers can be tracked. The amount of free slots per
+ * type is kept in a counter, so asking for it takes constant time. When a worker disconnects, its handler is
+ * unregistered and its free slots are discounted right away; the entries it still has in the queue are skipped and
+ * dropped once they reach the head.
  */
-public class WorkerTracker implements Observer {
+public class WorkerTracker implements Observer, Observable {
 
-    private final AtomicInteger aCount = new AtomicInteger(0);
-    private final AtomicInteger bCount = new AtomicInteger(0);
-    private final BlockingQueue<WorkerHandler> availableAWorkers = new ArrayBlockingQueue<>(25);
-    private final BlockingQueue<WorkerHandler> availableBWorkers = new ArrayBlockingQueue<>(25);
+    private final Pool[] pools = new Pool[TASK_TYPE.values().length];
+    private final Set<Observer> observers = new CopyOnWriteArraySet<>();
 
     /**
-     * Adds a WorkerHandler to the tracker. The tracker will deal with the specific type of WorkerHandler that is being added.
-     * Additionally, increments a counter that is used to maintain the amount of WorkerHandlers of that type that have connected to the
-     * {@link Conductor}.
+     * The connected workers of a single type, and their free slots.
      */
-    public void add(WorkerHandler workerHandler) {
-        if (workerHandler.getWorkerType() == A) {
-            availableAWorkers.add(workerHandler);
-            aCount.getAndIncrement();
+    private static class Pool {
+        final Map<WorkerHandler, Registration> registrations = new ConcurrentHashMap<>();
+        final Queue<Registration> freeSlots = new ConcurrentLinkedQueue<>();
+        final AtomicInteger freeCount = new AtomicInteger(0);
+        final AtomicInteger slotCount = new AtomicInteger(0);
+    }
+
+    /**
+     * A connected WorkerHandler along with the amount of entries it has in its pool's queue.
+     */
+    private static class Registration {
+        final WorkerHandler handler;
+        final AtomicInteger queued = new AtomicInteger(0);
+        volatile boolean removed;
+
+        Registration(WorkerHandler handler) {
+            this.handler = handler;
         }
 
-        else {
-            availableBWorkers.add(workerHandler);
-            bCount.getAndIncrement();
+        /**
+         * Claims one of the queued entries, unless they have all been discounted already.
+         */
+        boolean claim() {
+            int current;
+            do {
+                current = queued.get();
+                if (current <= 0)
+                    return false;
+            } while (!queued.compareAndSet(current, current - 1));
+
+            return true;
         }
     }
 
+    public WorkerTracker() {
+        for (int i = 0; i < pools.length; i++)
+            pools[i] = new Pool();
+    }
+
     /**
-     * @return true if a {@link Worker} of type A has connected to the system, false otherwise.
+     * Adds a WorkerHandler to the tracker. The tracker will deal with the specific type of WorkerHandler that is being
+     * added. A pushed WorkerHandler is made available once per slot of its worker. A WorkerHandler in pull mode is only
+     * counted; it becomes available once its worker asks for work. Either way, observers are notified.
      */
-    public boolean isAConnected() { return aCount.get() > 0; }
+    public void add(WorkerHandler workerHandler) {
+        Pool pool = pools[workerHandler.getWorkerType().ordinal()];
+        Registration registration = new Registration(workerHandler);
+        pool.registrations.put(workerHandler, registration);
+        pool.slotCount.getAndAdd(workerHandler.getSlots());
+
+        int freeSlots = workerHandler.isPull() ? 0 : workerHandler.getSlots();
+        for (int i = 0; i < freeSlots; i++)
+            release(pool, registration);
+
+        notifyObservers();
+    }
 
     /**
-     * @return true if a {@link Worker} of type B has connected to the system, false otherwise.
+     * Stops tracking a WorkerHandler whose worker has disconnected. Its free slots no longer count as available.
+     * @param workerHandler the handler to remove
      */
-    public boolean isBConnected() { return bCount.get() > 0; }
+    public void remove(WorkerHandler workerHandler) {
+        Pool pool = pools[workerHandler.getWorkerType().ordinal()];
+        Registration registration = pool.registrations.remove(workerHandler);
+        if (registration == null)
+            return;
+
+        registration.removed = true;
+        pool.slotCount.getAndAdd(-workerHandler.getSlots());
+        pool.freeCount.getAndAdd(-registration.queued.getAndSet(0));
+    }
+
+    private void release(Pool pool, Registration registration) {
+        if (registration.removed)
+            return;
+
+        registration.queued.incrementAndGet();
+        pool.freeCount.incrementAndGet();
+        pool.freeSlots.add(registration);
+    }
 
     /**
-     * Checks the queue containing A workers to see if at least one is available.
-     * @return true if an AWorker is available, false otherwise
+     * @param workerType the type of worker in question
+     * @return true if a {@link Worker} of the given type is connected, false otherwise
      */
-    public boolean isAFree() {
-        return availableAWorkers.size() > 0;
+    public boolean isConnected(TASK_TYPE workerType) {
+        return count(workerType) > 0;
     }
 
     /**
-     * Checks the queue containing B workers to see if at least one is available.
-     * @return true if an BWorker is available, false otherwise
+     * @param workerType the type of worker in question
+     * @return true if a slot of a worker of the given type is available, false otherwise
      */
-    public boolean isBFree() { return availableBWorkers.size() > 0; }
+    public boolean isFree(TASK_TYPE workerType) {
+        return freeSlots(workerType) > 0;
+    }
 
     /**
-     * @return the amount of AWorkers being tracked by the tracker. Includes occupied and available workers into the count.
+     * @param workerType the type of worker in question
+     * @return the amount of connected workers of the given type. Includes occupied and available workers into the count.
      */
-    public int aCount() {
-        return aCount.get();
+    public int count(TASK_TYPE workerType) {
+        return pools[workerType.ordinal()].registrations.size();
     }
 
     /**
-     * @return the amount of BWorkers being tracked by the tracker. Includes occupied and available workers into the count.
+     * @param workerType the type of worker in question
+     * @return the total amount of slots of all connected workers of the given type
      */
-    public int bCount() {
-        return bCount.get();
+    public int slots(TASK_TYPE workerType) {
+        return pools[workerType.ordinal()].slotCount.get();
     }
 
     /**
-     * @return a WorkerHandler that is associated with an AWorker
+     * @param workerType the type of worker in question
+     * @return the amount of slots of workers of the given type that are available right now
      */
-    public WorkerHandler getAHandler() {
-        try {
-            return availableAWorkers.take();
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+    public int freeSlots(TASK_TYPE workerType) {
+        return Math.max(0, pools[workerType.ordinal()].freeCount.get());
     }
 
     /**
-     * @return a WorkerHandler that is associated with a BWorker
+     * @param workerType the type of worker in question
+     * @return every connected WorkerHandler of the given type, whether it is occupied or not
      */
-    public WorkerHandler getBHandler() {
+    public Collection<WorkerHandler> handlers(TASK_TYPE workerType) {
+        return pools[workerType.ordinal()].registrations.keySet();
+    }
 
-        try {
-            return availableBWorkers.take();
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+    /**
+     * Takes a free slot of a worker of the given type, if there is one.
+     * @param workerType the type of worker in question
+     * @return a WorkerHandler that is associated with a worker of the given type, or {@code null} if all of their slots
+     * are occupied
+     */
+    public WorkerHandler pollHandler(TASK_TYPE workerType) {
+        Pool pool = pools[workerType.ordinal()];
+        Registration registration;
+        while ((registration = pool.freeSlots.poll()) != null) {
+            // Entries of a removed handler have been discounted already, unless they were returned after its removal
+            if (!registration.claim())
+                continue;
+
+            pool.freeCount.decrementAndGet();
+            if (!registration.removed)
+                return registration.handler;
         }
+
+        return null;
     }
 
     /**
-     * Updates the tracker in order to inform it of the given WorkerHandlers now availability.
-     * @param o the WorkerHandler that is completed with its task
+     * Updates the tracker in order to inform it that one more slot of the given WorkerHandler is available, or that its
+     * worker has disconnected.
+     * @param o the WorkerHandler that has a free slot or has disconnected
      */
     @Override
     public void update(Object o) {
         if (o instanceof WorkerHandler handler) {
+            if (!handler.isConnected()) {
+                remove(handler);
+                return;
+            }
+
+            Registration registration = pools[handler.getWorkerType().ordinal()].registrations.get(handler);
+            if (registration != null) {
+                release(pools[handler.getWorkerType().ordinal()], registration);
+                notifyObservers();
+            }
+        }
+    }
 
-            if (handler.getWorkerType() == A)
-                availableAWorkers.add(handler);
+    /**
+     * @param observer an observer that wants to know whenever a slot becomes available, e.g. the dispatcher
+     */
+    @Override
+    public void register(Observer observer) {
+        observers.add(observer);
+    }
 
-            else availableBWorkers.add(handler);
+    @Override
+    public void unregister(Observer observer) {
+        observers.remove(observer);
+    }
 
-        }
+    /**
+     * Lets all registered observers know that a slot has become available.
+     */
+    @Override
+    public void notifyObservers() {
+        for (Observer observer : observers)
+            observer.update(this);
     }
 }
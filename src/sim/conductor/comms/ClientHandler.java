@@ -1,81 +1,189 @@
 package sim.conductor.comms;
 
 import sim.client.Client;
+import sim.comms.Connection;
+import sim.comms.EventDrivenConnection;
 import sim.comms.Receiver;
 import sim.comms.Sender;
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageReader;
+import sim.comms.wire.MessageWriter;
+import sim.comms.wire.TaskBatch;
+import sim.concurrent.Threads;
 import sim.component.ComponentID;
+import sim.comms.wire.Credit;
 import sim.conductor.Conductor;
+import sim.conductor.ClientRegistry;
+import sim.conductor.CreditController;
+import sim.config.Config;
+import sim.conductor.scheduling.Dispatcher;
+import sim.conductor.wal.TaskLog;
+import sim.log.Log;
+import sim.metrics.TaskTable;
 import sim.task.Task;
 
 import java.io.*;
-import java.net.Socket;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This class handles the {@link Conductor} connection with a given client. Via separate thread classes in: {@link TaskReceiver}
- * and {@link TaskSender},this class will store tasks it receives from the appropriate client in a collection for the
+ * and {@link TaskSender},this class will hand tasks it receives from the appropriate client to a dispatcher for the
  * Conductor to oversee (this class will have a reference to that collection via DIP), as well as store completed tasks
  * that have been processed by the overarching program in order to send them back to the respective client.
  * <p>
  * Once the ClientHandler receives word from the Client to terminate their connection, the ClientHandler will automatically
- * shut down its client socket.
+ * shut down its client connection.
+ * <p>
+ * When the connection is an {@link EventDrivenConnection}, no threads are started at all: incoming tasks are pushed to
+ * the handler by the connection, and completed tasks are written straight to its non-blocking writer.
  */
 public class ClientHandler {
 
-    private final Socket mySocket;
+    private final Connection connection;
     private final ComponentID myComponentID;
     private final TaskSender taskSender = new TaskSender();
     private final TaskReceiver taskReceiver = new TaskReceiver();
-    private final BlockingQueue<Task> completedTasks = new ArrayBlockingQueue<>(100);
-    private ObjectInputStream objIn;
-    private ObjectOutputStream objOut;
-    private BlockingQueue<Task> collectedTasks;
+    private final BlockingQueue<Message> outgoingMessages = new LinkedBlockingQueue<>();
+    private final MessageReader in;
+    private final MessageWriter out;
+    private final boolean eventDriven;
+    private Dispatcher dispatcher;
+    private ClientRegistry clientRegistry;
+    private TaskTable taskTable;
+    private TaskLog taskLog;
+    private final AtomicBoolean connected = new AtomicBoolean(true);
+    private Thread senderThread;
 
     /**
      * @param connectingComponentID the component ID of the client that this ClientHandler instance will be overseeing
      *                             responsibility for.
-     * @param clientSocket the connecting {@link Client} socket used to communicate with the respective client
-     * @param objIn the object input stream to be used to receive tasks from the connecting client
+     * @param connection the connection to the connecting {@link Client}, whose handshake has already been read
      */
-    public ClientHandler(ComponentID connectingComponentID, Socket clientSocket, ObjectInputStream objIn) {
+    public ClientHandler(ComponentID connectingComponentID, Connection connection) {
         this.myComponentID = connectingComponentID;
-        this.mySocket = clientSocket;
-        this.objIn = objIn;
-        initializeStreams();
+        this.connection = connection;
+        this.eventDriven = connection instanceof EventDrivenConnection;
+        this.in = eventDriven ? null : connection.reader();
+        this.out = connection.writer();
     }
 
     /**
-     * Initializes an ObjectOutputStream for this ClientHandler instance to use to communicate with its respective client.
+     * Starts the {@link TaskReceiver} and {@link TaskSender} threads to begin collecting incoming tasks from the client and sending completed
+     * tasks back to it. Event-driven connections are bound to this handler instead.
      */
-    private void initializeStreams() {
-        try {
-            objOut = new ObjectOutputStream(mySocket.getOutputStream());
-        } catch (IOException e)
-        {
-            throw new RuntimeException(e);
+    public void start() {
+        if (dispatcher == null || clientRegistry == null)
+            throw new RuntimeException("Cannot start handler without setting a dispatcher and a client registry...");
+
+        if (connection instanceof EventDrivenConnection eventDrivenConnection) {
+            eventDrivenConnection.bind(this::onMessage, this::onDisconnect);
+            return;
         }
+
+        senderThread = Threads.start("client-handler-" + myComponentID.refID() + "-sender", taskSender);
+        Threads.start("client-handler-" + myComponentID.refID() + "-receiver", taskReceiver);
     }
 
     /**
-     * Starts the {@link TaskReceiver} and {@link TaskSender} threads to begin collecting incoming tasks from the client and sending completed
-     * tasks back to it.
+     * Handles a single message pushed by an event-driven connection.
      */
-    public void start() {
-        if (collectedTasks == null)
-            throw new RuntimeException("Cannot start handler without setting task collection...");
+    private void onMessage(Message message) {
+        if (!collect(message))
+            terminate();
+    }
+
+    /**
+     * Handles the disconnection of the client, on either kind of connection.
+     */
+    private void onDisconnect() {
+        Log.info("CONDUCTOR: Client %d has disconnected...", myComponentID.refID());
+        terminate();
+    }
+
+    /**
+     * Hands a task or a batch of tasks received from the client to the Conductor's {@link Dispatcher}. Tasks that the
+     * Conductor already holds, because a reattached client sent them again, are left out, and the credits spent on them
+     * are handed back.
+     * @param message the task or batch received from the client
+     * @return false if the message was the client's request to terminate the connection, true otherwise
+     */
+    private boolean collect(Message message) {
+        if (message instanceof TaskBatch batch) {
+            List<Task> tasks = admit(batch.tasks());
+            if (!tasks.isEmpty())
+                dispatcher.submitAll(tasks);
+            Log.trace("CONDUCTOR: RECEIVED batch of %d tasks from client %d", batch.tasks().size(), myComponentID.refID());
+            return true;
+        }
+
+        Task incomingTask = (Task) message;
+        if (incomingTask.taskID() == -1) {
+            Log.info("CONDUCTOR: Termination request by client %d... terminating", incomingTask.clientID());
+            return false;
+        }
 
-        taskSender.start();
-        taskReceiver.start();
+        if (admit(List.of(incomingTask)).isEmpty())
+            return true;
+
+        dispatcher.submit(incomingTask);
+        Log.trace("CONDUCTOR: RECEIVED %s", incomingTask);
+        return true;
+    }
+
+    /**
+     * Enters received tasks in the {@link TaskTable} and the {@link TaskLog}, leaving out those that either already
+     * holds.
+     * @return the tasks to dispatch
+     */
+    private List<Task> admit(List<Task> received) {
+        List<Task> tasks = received;
+        if (taskTable != null)
+            tasks = taskTable.received(tasks);
+        if (taskLog != null)
+            tasks = taskLog.accept(tasks);
+
+        if (tasks.size() < received.size()) {
+            Log.trace("CONDUCTOR: Left out %d tasks client %d sent again", received.size() - tasks.size(),
+                    myComponentID.refID());
+            clientRegistry.refund(this, received.size() - tasks.size());
+        }
+
+        return tasks;
     }
 
     /**
-     * Closes client socket, effectively killing both the {@link TaskSender} and the {@link TaskReceiver}.
+     * Writes a completed task, or a batch of them, back to the client.
+     */
+    private void confirm(Message completed) throws IOException {
+        out.send(completed);
+        if (taskTable != null)
+            taskTable.returned(completed instanceof TaskBatch batch ? batch.tasks() : List.of((Task) completed));
+
+        if (completed instanceof TaskBatch batch)
+            Log.trace("CONDUCTOR: Confirmed %d tasks with client %d", batch.tasks().size(), myComponentID.refID());
+
+        else Log.trace("CONDUCTOR: Confirmed %s with client", completed);
+    }
+
+    /**
+     * Closes the client connection, effectively killing both the {@link TaskSender} and the {@link TaskReceiver}. This is
+     * the only place the client is retired from the {@link ClientRegistry}, once, however the connection came to an end.
      */
     private void terminate() {
+        if (!connected.compareAndSet(true, false))
+            return;
+
+        clientRegistry.retire(this);
+        if (senderThread != null)
+            senderThread.interrupt(); // It may be waiting for a completed task that will never come
         try {
-            mySocket.close();
-            System.out.println("CONDUCTOR: Terminated Client " + myComponentID.refID());
+            connection.close();
+            Log.info("CONDUCTOR: Terminated Client %d", myComponentID.refID());
         } catch (IOException e){
             e.printStackTrace();
         }
@@ -84,21 +192,93 @@ public class ClientHandler {
     /**
      * While this method does not literally send a task to the connected client, it does add it to a BlockingQueue that
      * this ClientHandler's {@link TaskSender} instance will send back to the client. This is done in order to keep
-     * things as asynchronous as possible.
+     * things as asynchronous as possible. On an event-driven connection the task is handed to the connection's
+     * non-blocking writer directly.
      * @param completedTask the task that has completed and should be returned to the client
      */
     public void sendTask(Task completedTask) {
-        completedTasks.add(completedTask);
+        deliver(completedTask);
+    }
+
+    /**
+     * Returns several completed tasks to the client at once, in a single {@link TaskBatch}.
+     * @param completedTasks the tasks that have completed and should be returned to the client
+     */
+    public void sendTasks(List<Task> completedTasks) {
+        deliver(TaskBatch.of(completedTasks));
+    }
+
+    private void deliver(Message completed) {
+        if (!eventDriven) {
+            outgoingMessages.add(completed);
+            return;
+        }
+
+        try {
+            confirm(completed);
+        } catch (IOException e) {
+            Log.warn("CONDUCTOR: Could not confirm %s, client %d is gone", completed, myComponentID.refID());
+        }
     }
 
 
     /**
-     * This method sets the overarching {@link Task} collection that the {@link sim.conductor.Conductor} will have access
-     * to in order to facilitate further handling of having the tasks done and sent back to their respective clients.
-     * @param collectedTasks the overarching Task collection that the Conductor oversees
+     * Lets the client send more tasks. The credit is sent after any completed task that is already on its way.
+     * @param credit the credit granted by the {@link CreditController}
      */
-    public void setCollections(BlockingQueue<Task> collectedTasks) {
-        this.collectedTasks = collectedTasks;
+    public void grant(Credit credit) {
+        if (!eventDriven) {
+            outgoingMessages.add(credit);
+            return;
+        }
+
+        try {
+            out.send(credit);
+        } catch (IOException e) {
+            Log.warn("CONDUCTOR: Could not grant credits, client %d is gone", myComponentID.refID());
+        }
+    }
+
+    /**
+     * Sets the {@link ClientRegistry} this handler's client is registered with, which is told once the client is gone.
+     * @param clientRegistry the Conductor's ClientRegistry
+     */
+    public void setClientRegistry(ClientRegistry clientRegistry) {
+        this.clientRegistry = clientRegistry;
+    }
+
+    /**
+     * @return false once the client has disconnected or asked to terminate, true before
+     */
+    public boolean isConnected() {
+        return connected.get();
+    }
+
+    /**
+     * Sets the {@link TaskTable} that this handler stamps with the time tasks are received from and returned to the
+     * client, and that tells it which of the tasks a reattached client sends again are still in flight.
+     * @param taskTable the Conductor's TaskTable
+     */
+    public void setTaskTable(TaskTable taskTable) {
+        this.taskTable = taskTable;
+    }
+
+    /**
+     * Sets the {@link TaskLog} that every task received from the client is recorded in before it is dispatched. Tasks
+     * the log already holds, which a reattached client may send again, are not dispatched twice.
+     * @param taskLog the Conductor's TaskLog, if it runs in durable mode
+     */
+    public void setTaskLog(TaskLog taskLog) {
+        this.taskLog = taskLog;
+    }
+
+    /**
+     * This method sets the {@link Dispatcher} of the {@link sim.conductor.Conductor} that collected tasks are handed to
+     * in order to facilitate further handling of having the tasks done and sent back to their respective clients.
+     * @param dispatcher the Dispatcher that the Conductor oversees
+     */
+    public void setDispatcher(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
     }
 
     /**
@@ -111,13 +291,18 @@ public class ClientHandler {
     /**
      * The TaskConfirmer class is a private class that is leveraged by its parent ClientHandler class. In order to retrieve
      * and send tasks to and from clients concurrently, the TaskConfirmer assumes the responsibility of  confirming
-     * completed tasks with the given client via the parent ClientHandler's client sockets output stream.
+     * completed tasks with the given client via the parent ClientHandler's client connection.
      */
-    private class TaskSender extends Thread implements Sender {
+    private class TaskSender implements Runnable, Sender {
 
         /**
          * When a completed task becomes available in the parent ClientHolder's blocking queue, the TaskConfirmer will
-         * send it's TaskID to the client to let it know of that tasks completion.
+         * send it's TaskID to the client to let it know of that tasks completion. Credits granted to the client are sent
+         * through the same queue.
+         * <p>
+         * Completed tasks arrive straight from the workers that performed them. After taking some, the sender collects
+         * more for up to {@link Config#lingerMillis()} or until {@link Config#batchSize()} tasks are at hand, and
+         * returns them in a single batch. A credit that comes up in the meantime is sent right after the batch.
          */
         @Override
         public void run() {
@@ -126,31 +311,65 @@ public class ClientHandler {
 
         @Override
         public void send() {
+            int batchSize = Config.batchSize();
+            long lingerNanos = TimeUnit.MILLISECONDS.toNanos(Config.lingerMillis());
+            List<Task> batch = new ArrayList<>(batchSize);
             try {
-                Task completedTask;
-                while ((completedTask = completedTasks.take()) != null) {
-                    objOut.writeObject(completedTask);
-                    System.out.println("CONDUCTOR: Confirmed " + completedTask + " with client");
+                Message message;
+                while ((message = outgoingMessages.take()) != null) {
+                    if (message instanceof Credit) {
+                        out.send(message);
+                        continue;
+                    }
+
+                    collect(batch, message);
+                    long deadline = System.nanoTime() + lingerNanos;
+                    Message next = null;
+                    while (batch.size() < batchSize
+                            && (next = outgoingMessages.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null
+                            && !(next instanceof Credit)) {
+                        collect(batch, next);
+                        next = null;
+                    }
+
+                    confirm(batch.size() == 1 ? batch.get(0) : TaskBatch.of(batch));
+                    batch.clear();
+                    if (next != null)
+                        out.send(next);
                 }
 
-            } catch (IOException | InterruptedException e) {
-                e.printStackTrace();
+            } catch (IOException e) {
+                // Credits granted while the client was saying goodbye have nobody left to go to
+                if (!connection.isClosed())
+                    e.printStackTrace();
+
+            } catch (InterruptedException e) {
+                // A terminated handler stops its sender on purpose
+                if (connected.get())
+                    e.printStackTrace();
             }
         }
+
+        private void collect(List<Task> batch, Message completed) {
+            if (completed instanceof TaskBatch unit)
+                batch.addAll(unit.tasks());
+
+            else batch.add((Task) completed);
+        }
     }
 
     /**
      * The TaskReceiver class is a private class that is leveraged by its parent ClientHandler class. In order to retrieve
      * and send tasks to and from clients concurrently, the TaskCollector assumes the responsibility of retrieving
-     * tasks using the parent ClientHandler's client sockets input stream.
+     * tasks using the parent ClientHandler's client connection.
      * <p>
-     * Once the client sends word to end communications, this class will terminate the client socket using the
+     * Once the client sends word to end communications, this class will terminate the client connection using the
      * {@code terminate} method.
      */
-    private class TaskReceiver extends Thread implements Receiver {
+    private class TaskReceiver implements Runnable, Receiver {
 
         /**
-         * Receives incoming tasks from this client socket and stores them in the parent ClientHandler's Task Store.
+         * Receives incoming tasks from this client connection and stores them in the parent ClientHandler's Task Store.
          */
         @Override
         public void run() {
@@ -160,16 +379,10 @@ public class ClientHandler {
         @Override
         public void receive() {
             try {
-                Task incomingTask;
-                while ((incomingTask = (Task) objIn.readObject()).taskID() != -1) {
-                    collectedTasks.add(incomingTask);
-                    System.out.println("CONDUCTOR: RECEIVED " + incomingTask);
-                }
-                System.out.printf("CONDUCTOR: Termination request by client %d... terminating\n", incomingTask.clientID());
+                while (collect(in.read()));
             }
-            catch (IOException | ClassNotFoundException e) {
-                if (e instanceof IOException)
-                    System.out.printf("CONDUCTOR: Client %d has disconnected...\n", myComponentID.refID());
+            catch (IOException e) {
+                Log.info("CONDUCTOR: Client %d has disconnected...", myComponentID.refID());
             }
             finally {
                 terminate();
@@ -1,10 +1,25 @@
 package sim.conductor.comms;
 
+import sim.comms.Connection;
+import sim.comms.EventDrivenConnection;
 import sim.comms.Receiver;
 import sim.comms.Sender;
+import sim.comms.wire.Handshake;
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageReader;
+import sim.comms.wire.MessageWriter;
+import sim.comms.wire.TaskBatch;
+import sim.comms.wire.WorkRequest;
+import sim.concurrent.Threads;
 import sim.component.ComponentID;
+import sim.config.Config;
+import sim.conductor.ClientRegistry;
 import sim.conductor.Conductor;
+import sim.conductor.LeaseTable;
 import sim.conductor.WorkerTracker;
+import sim.conductor.wal.TaskLog;
+import sim.log.Log;
+import sim.metrics.TaskTable;
 import sim.observer.Observable;
 import sim.observer.Observer;
 import sim.task.TASK_TYPE;
@@ -12,74 +27,308 @@ import sim.task.Task;
 import sim.worker.Worker;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
-import java.net.SocketException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
  * This class handles the {@link Conductor}s connection with a given worker. Via separate thread classes in:
  * {@link WorkerHandler.TaskReceiver} and {@link WorkerHandler.TaskSender},this class will send tasks upon command to
  * the appropriate worker. Once the task has been completed, the WorkerHandler will store the task in the Conductor's
  * completed tasks queue, as this class will have a reference to it via DIP.
+ * <p>
+ * When the connection is an {@link EventDrivenConnection}, no threads are started: completed tasks are pushed to the
+ * handler by the connection, and assigned tasks are written straight to its non-blocking writer.
+ * <p>
+ * A handler notifies its observers once for every task its worker is ready to take. For a pushed worker, that is once
+ * per completed task. For a worker in pull mode, it is once per task asked for in each {@link WorkRequest}, while
+ * completions alone never make it available again. Once the worker disconnects, observers are notified one last time
+ * so that they can stop tracking the handler.
+ * <p>
+ * The handler also estimates when each of its worker's slots will be free again, based on the tasks it has sent and the
+ * known cost of each task type. Cost-aware scheduling strategies use this estimate to compare workers. It also measures
+ * how long tasks actually take, from being sent to being returned, which is used to size work units of several tasks.
+ * <p>
+ * Every task sent to the worker is leased to it in the Conductor's {@link LeaseTable}, until the worker completes it.
+ * Once the worker disconnects, or is given up on because it is overdue, its tasks are dispatched again elsewhere.
  */
 public class WorkerHandler implements Observable {
 
-    private final Socket mySocket;
+    private final Connection connection;
     private final TASK_TYPE workerType;
     private final ComponentID myComponentID;
-    private final ObjectInputStream objIn;
+    private final MessageReader in;
+    private final MessageWriter out;
+    private final boolean eventDriven;
+    private final boolean pull;
+    private final int slots;
     private final TaskSender taskSender = new TaskSender();
     private final TaskReceiver taskReceiver = new TaskReceiver();
-    private final BlockingQueue<Task> tasksToSend = new ArrayBlockingQueue<>(100);
+    private Thread senderThread;
+    private final BlockingQueue<Message> tasksToSend = new LinkedBlockingQueue<>();
     private final HashSet<WorkerTracker> observingTrackers = new HashSet<>();
-    private BlockingQueue<Task> completedTaskQueue;
-    private ObjectOutputStream objOut;
+    private ClientRegistry clientRegistry;
+    private LeaseTable leaseTable;
+    private TaskTable taskTable;
+    private TaskLog taskLog;
+    private final long[] slotFreeAt;
+    private int inFlight;
+    private final Map<Task, Long> unitsSentAt = new HashMap<>();
+    private double taskMillisEstimate = -1;
+    private LongSupplier clock = System::nanoTime;
+    private volatile boolean connected = true;
 
     /**
-     * @param connectingComponentID the connecting component's ComponentID
-     * @param workerSocket the connecting {@link Worker} socket used to communicate with the respective worker
-     * @param objIn the object input stream used to receive tasks from workers
+     * @param handshake the handshake sent by the connecting {@link Worker}
+     * @param connection the connection to the connecting Worker, whose handshake has already been read
      */
-    public WorkerHandler(ComponentID connectingComponentID, Socket workerSocket, TASK_TYPE workerType, ObjectInputStream objIn) {
-        this.myComponentID = connectingComponentID;
-        this.mySocket = workerSocket;
-        this.workerType = workerType;
-        this.objIn = objIn;
-        initializeStreams();
+    public WorkerHandler(Handshake handshake, Connection connection) {
+        this.myComponentID = handshake.componentID();
+        this.connection = connection;
+        this.workerType = handshake.workerType();
+        this.pull = handshake.isPull();
+        this.slots = Math.max(1, handshake.slots());
+        this.slotFreeAt = new long[slots];
+        this.eventDriven = connection instanceof EventDrivenConnection;
+        this.in = eventDriven ? null : connection.reader();
+        this.out = connection.writer();
     }
 
     /**
-     * Initializes an ObjectOutputStream for this ClientHandler instance to use to communicate with its respective client.
+     * Starts the {@link WorkerHandler.TaskReceiver} and {@link WorkerHandler.TaskSender} threads to begin collecting incoming tasks from the client and sending completed
+     * tasks back to it. Event-driven connections are bound to this handler instead.
+     */
+    public void start() {
+        if (connection instanceof EventDrivenConnection eventDrivenConnection) {
+            eventDrivenConnection.bind(this::onMessage, this::onDisconnect);
+            return;
+        }
+
+        senderThread = Threads.start("worker-handler-" + myComponentID.refID() + "-sender", taskSender);
+        Threads.start("worker-handler-" + myComponentID.refID() + "-receiver", taskReceiver);
+    }
+
+    /**
+     * Handles a single message pushed by an event-driven connection.
      */
-    private void initializeStreams() {
+    private void onMessage(Message message) {
+        if (message instanceof WorkRequest request)
+            grant(request.amount());
+
+        else if (message instanceof TaskBatch batch)
+            complete(batch.tasks());
+
+        else complete(List.of((Task) message));
+    }
+
+    /**
+     * Lets the observers know that a worker in pull mode is ready to receive the given amount of additional tasks.
+     */
+    private void grant(int amount) {
+        for (int i = 0; i < amount; i++)
+            notifyObservers();
+    }
+
+    /**
+     * Handles the disconnection of the worker: the observers stop tracking this handler, the {@link TaskSender} is
+     * stopped, and then the tasks leased to the worker are dispatched again.
+     */
+    private void onDisconnect() {
+        synchronized (this) {
+            if (!connected)
+                return;
+
+            connected = false;
+        }
+
+        Log.info("CONDUCTOR: Worker(%s) %d has disconnected...", workerType, myComponentID.refID());
+        notifyObservers();
+        if (senderThread != null)
+            senderThread.interrupt(); // It may be waiting for a task that will never come
+        if (leaseTable != null)
+            leaseTable.reclaim(this);
+    }
+
+    /**
+     * Gives up on a worker that has not completed its tasks in time. The connection is closed and the worker is handled
+     * as if it had disconnected.
+     */
+    public void expire() {
+        if (!connected)
+            return;
+
+        Log.warn("CONDUCTOR: Worker(%s) %d is overdue, disconnecting...", workerType, myComponentID.refID());
         try {
-            objOut = new ObjectOutputStream(mySocket.getOutputStream());
-        } catch (IOException e)
-        {
-            throw new RuntimeException(e);
+            connection.close();
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+
+        onDisconnect();
     }
 
     /**
-     * Starts the {@link WorkerHandler.TaskReceiver} and {@link WorkerHandler.TaskSender} threads to begin collecting incoming tasks from the client and sending completed
-     * tasks back to it.
+     * Routes a work unit the worker has completed straight to the clients it belongs to and lets the observers know one of the worker's slots
+     * is free again. Tasks that another worker has already completed are not routed again.
      */
-    public void start() {
-        taskSender.start();
-        taskReceiver.start();
+    private void complete(List<Task> unit) {
+        if (unit.size() == 1)
+            Log.trace("CONDUCTOR: Received completed %s from %s", unit.get(0), myComponentID);
+
+        else Log.trace("CONDUCTOR: Received %d completed tasks from %s", unit.size(), myComponentID);
+        List<Task> completed = leaseTable != null ? leaseTable.complete(unit, this) : unit;
+        if (!completed.isEmpty()) {
+            if (taskLog != null)
+                taskLog.complete(completed);
+            if (taskTable != null)
+                taskTable.completed(completed);
+            clientRegistry.route(completed);
+        }
+
+        release(unit);
+        if (!pull)
+            notifyObservers();
+    }
+
+    /**
+     * Books the given work unit on the slot of the worker that is expected to be free the soonest. The tasks of a unit
+     * are performed one after the other.
+     * @return the time, in milliseconds on this handler's clock, at which the unit is expected to be completed
+     */
+    private synchronized long reserve(List<Task> unit) {
+        int slot = earliestSlot();
+        slotFreeAt[slot] = Math.max(nowMillis(), slotFreeAt[slot]);
+        for (Task task : unit)
+            slotFreeAt[slot] += Config.taskMillis(task.type(), workerType);
+
+        inFlight += unit.size();
+        unitsSentAt.put(unit.get(0), clock.getAsLong());
+        return slotFreeAt[slot];
+    }
+
+    /**
+     * Accounts for a completed work unit and updates the observed time per task. Once the worker has nothing left to do,
+     * the estimates are reset so that errors in the estimated costs do not pile up.
+     */
+    private synchronized void release(List<Task> unit) {
+        Long sentAt = unitsSentAt.remove(unit.get(0));
+        if (sentAt != null) {
+            double millisPerTask = (clock.getAsLong() - sentAt) / 1e6 / unit.size();
+            taskMillisEstimate = taskMillisEstimate < 0 ? millisPerTask : 0.8 * taskMillisEstimate + 0.2 * millisPerTask;
+        }
+
+        inFlight -= unit.size();
+        if (inFlight <= 0) {
+            inFlight = 0;
+            Arrays.fill(slotFreeAt, 0);
+        }
+    }
+
+    private long nowMillis() {
+        return clock.getAsLong() / 1_000_000;
+    }
+
+    private int earliestSlot() {
+        int earliest = 0;
+        for (int i = 1; i < slotFreeAt.length; i++) {
+            if (slotFreeAt[i] < slotFreeAt[earliest])
+                earliest = i;
+        }
+
+        return earliest;
     }
 
     /**
-     * Sets the queue that this WorkerHandler instance should store completed tasks in. This is going to be a reference to
-     * the completed tasks queue in the {@link sim.conductor.Conductor}.
-     * @param conductorsCompletedTaskQueue a reference to the completed task queue in the conductor
+     * @param task a task that might be assigned to this handler's worker
+     * @return the time, in milliseconds on this handler's clock, at which the worker is expected to complete the given
+     * task if it were assigned now, taking the tasks it is already working on into account
      */
-    public void setCompletedTaskQueue(BlockingQueue<Task> conductorsCompletedTaskQueue) {
-        this.completedTaskQueue = conductorsCompletedTaskQueue;
+    public synchronized long expectedCompletion(Task task) {
+        return Math.max(nowMillis(), slotFreeAt[earliestSlot()]) + Config.taskMillis(task.type(), workerType);
+    }
+
+    /**
+     * Sizes the next work unit for this worker so that it takes about the given amount of time, based on how long the
+     * worker's tasks have taken so far, from being sent to being returned.
+     * @param maxUnitSize the largest unit size allowed
+     * @param targetMillis how long a unit should take
+     * @return how many tasks the next unit should hold; 1 until a first unit has been completed
+     */
+    public synchronized int unitSize(int maxUnitSize, double targetMillis) {
+        if (taskMillisEstimate < 0)
+            return 1;
+
+        long size = Math.round(targetMillis / Math.max(taskMillisEstimate, 0.001));
+        return (int) Math.max(1, Math.min(maxUnitSize, size));
+    }
+
+    /**
+     * @return the amount of tasks that have been sent to the worker and not yet completed
+     */
+    public synchronized int getBacklog() {
+        return inFlight;
+    }
+
+    /**
+     * Writes an assigned task, or work unit, to the worker.
+     */
+    private void dispatch(Message taskToSend) throws IOException {
+        if (taskToSend instanceof TaskBatch unit)
+            Log.trace("CONDUCTOR: Sent %d tasks to Worker%d", unit.tasks().size(), myComponentID.refID());
+
+        else Log.trace("CONDUCTOR: Sent %s to Worker%d", taskToSend, myComponentID.refID());
+        out.send(taskToSend);
+        if (taskTable != null)
+            taskTable.sent(taskToSend instanceof TaskBatch unit ? unit.tasks() : List.of((Task) taskToSend));
+    }
+
+    /**
+     * Sets the registry that this WorkerHandler instance returns completed tasks through. This is going to be a reference
+     * to the {@link ClientRegistry} of the {@link sim.conductor.Conductor}.
+     * @param clientRegistry the registry of the clients connected to the conductor
+     */
+    public void setClientRegistry(ClientRegistry clientRegistry) {
+        this.clientRegistry = clientRegistry;
+    }
+
+    /**
+     * Sets the {@link LeaseTable} that every task sent to the worker is leased in until the worker completes it.
+     * @param leaseTable the Conductor's LeaseTable, on the same clock as this handler
+     */
+    public void setLeaseTable(LeaseTable leaseTable) {
+        this.leaseTable = leaseTable;
+    }
+
+    /**
+     * Sets the {@link TaskLog} that records every task sent to the worker and every task it completes first.
+     * @param taskLog the Conductor's TaskLog, if it runs in durable mode
+     */
+    public void setTaskLog(TaskLog taskLog) {
+        this.taskLog = taskLog;
+    }
+
+    /**
+     * Sets the clock that estimates and measurements are based on. Handlers that are compared with each other must share
+     * the same clock. Defaults to {@link System#nanoTime()}; a simulation running on virtual time passes its own.
+     * @param nanoClock a monotonic clock, in nanoseconds
+     */
+    public synchronized void setClock(LongSupplier nanoClock) {
+        this.clock = nanoClock;
+    }
+
+    /**
+     * Sets the {@link TaskTable} that this handler stamps with the time tasks are assigned, sent to the worker and
+     * completed.
+     * @param taskTable the Conductor's TaskTable
+     */
+    public void setTaskTable(TaskTable taskTable) {
+        this.taskTable = taskTable;
     }
 
     /**
@@ -89,6 +338,27 @@ public class WorkerHandler implements Observable {
         return myComponentID;
     }
 
+    /**
+     * @return true if the worker pulls its tasks through {@link WorkRequest}s, false if tasks are pushed to it
+     */
+    public boolean isPull() {
+        return pull;
+    }
+
+    /**
+     * @return false once the worker has disconnected, true before that
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return how many tasks the worker executes concurrently
+     */
+    public int getSlots() {
+        return slots;
+    }
+
     /**
      * @return the type of worker associated with this WorkerHandler instance
      */
@@ -99,19 +369,69 @@ public class WorkerHandler implements Observable {
     /**
      * While this method does not literally send a task to the connected worker, it does add it to a BlockingQueue that
      * this WorkerHandler's {@link TaskSender} instance will send to the worker. This is done in order to keep
-     * things as asynchronous as possible.
+     * things as asynchronous as possible. On an event-driven connection the task is handed to the connection's
+     * non-blocking writer directly.
      * @param taskToSend the task to send to the worker
      */
     public void sendTask(Task taskToSend) {
-        tasksToSend.add(taskToSend);
+        sendTasks(List.of(taskToSend));
+    }
+
+    /**
+     * Sends several tasks to the worker as a single work unit. The unit takes up one of the worker's slots, in which its
+     * tasks are performed one after the other, and is returned as a single {@link TaskBatch}.
+     * @param unit the tasks to send to the worker
+     */
+    public void sendTasks(List<Task> unit) {
+        if (taskTable != null)
+            taskTable.assigned(unit, workerType);
+        long expectedMillis = reserve(unit);
+        if (leaseTable != null)
+            leaseTable.lease(unit, this, TimeUnit.MILLISECONDS.toNanos(expectedMillis));
+        if (taskLog != null)
+            taskLog.assign(unit, myComponentID.refID());
+        send(TaskBatch.of(unit));
+    }
+
+    /**
+     * Sends a speculative copy of a task that is straggling on another worker, in a free slot the dispatcher has taken
+     * from this handler. If the copy is no longer needed, the slot is handed back instead.
+     * @param straggler the task to copy
+     * @return true if the copy has been sent, false otherwise
+     */
+    public boolean hedge(Task straggler) {
+        long expectedNanos = TimeUnit.MILLISECONDS.toNanos(expectedCompletion(straggler));
+        if (leaseTable == null || !leaseTable.hedge(straggler, this, expectedNanos)) {
+            notifyObservers();
+            return false;
+        }
+
+        reserve(List.of(straggler));
+        if (taskLog != null)
+            taskLog.assign(List.of(straggler), myComponentID.refID());
+        send(straggler);
+        return true;
+    }
+
+    private void send(Message taskToSend) {
+        if (!eventDriven) {
+            tasksToSend.add(taskToSend);
+            return;
+        }
+
+        try {
+            dispatch(taskToSend);
+        } catch (IOException e) {
+            Log.warn("CONDUCTOR: Could not send %s, worker %d is gone", taskToSend, myComponentID.refID());
+        }
     }
 
     /**
      * The TaskSender class is a private class that is leveraged by its parent WorkerHandler class. In order to retrieve
      * and send tasks to and from workers concurrently, the TaskSender assumes the responsibility of sending
-     * tasks to the given worker via the parent WorkerHandler's client sockets output stream.
+     * tasks to the given worker via the parent WorkerHandler's worker connection.
      */
-    private class TaskSender extends Thread implements Sender {
+    private class TaskSender implements Runnable, Sender {
 
         // This class contains the Thread which will be used by the Master to assign Tasks to this Worker.
 
@@ -123,16 +443,18 @@ public class WorkerHandler implements Observable {
         @Override
         public void send() {
             try {
-                Task taskToSend;
+                Message taskToSend;
                 while ((taskToSend = tasksToSend.take()) != null) {
-                    System.out.println("CONDUCTOR: Sent " + taskToSend + " to Worker" + myComponentID.refID());
-                    objOut.writeObject(taskToSend);
+                    dispatch(taskToSend);
                 }
             }
 
             catch (IOException | InterruptedException e) {
-                e.printStackTrace();
-                System.out.println("WorkerHandler interrupted");
+                // A worker that has disconnected stops its sender on purpose
+                if (connected) {
+                    e.printStackTrace();
+                    Log.info("CONDUCTOR: WorkerHandler interrupted");
+                }
             }
         }
     }
@@ -140,9 +462,9 @@ public class WorkerHandler implements Observable {
     /**
      * The TaskReceiver class is a private class that is leveraged by its parent WorkerHandler class. In order to retrieve
      * and send tasks to and from workers concurrently, the TaskReceiver assumes the responsibility of receiving
-     * tasks from the given worker via the parent WorkerHandler's client sockets input stream.
+     * tasks from the given worker via the parent WorkerHandler's worker connection.
      */
-    private class TaskReceiver extends Thread implements Receiver {
+    private class TaskReceiver implements Runnable, Receiver {
 
         // This class contains the Thread which will be used by the Master to receive feedback of completed Tasks from this Worker.
 
@@ -153,18 +475,14 @@ public class WorkerHandler implements Observable {
 
         @Override
         public void receive() {
-            Task task;
             try{
-                while ((task = (Task) objIn.readObject()) != null) {
-                    System.out.println("CONDUCTOR: Received completed " + task + " from " + myComponentID);
-                    completedTaskQueue.add(task);
-                    notifyObservers();
+                while (true) {
+                    onMessage(in.read());
                 }
             }
 
-            catch (IOException | ClassNotFoundException e) {
-                if (e instanceof IOException)
-                    System.out.printf("CONDUCTOR: Worker(%s) %d has disconnected...\n", workerType, myComponentID.refID());
+            catch (IOException e) {
+                onDisconnect();
             }
         }
     }
@@ -192,7 +510,8 @@ public class WorkerHandler implements Observable {
     }
 
     /**
-     * Lets all registered observers know of this WorkerHandlers availability to perform another task.
+     * Lets all registered observers know of this WorkerHandlers availability to perform another task, or of the
+     * disconnection of its worker.
      */
     @Override
     public void notifyObservers() {
@@ -0,0 +1,217 @@
+package sim.conductor.nio;
+
+import sim.comms.Connection;
+import sim.comms.wire.BinaryWireCodec;
+import sim.comms.wire.Handshake;
+import sim.comms.wire.Message;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * A single selector thread that serves many {@link NioConnection}s. All reads, frame decoding, frame encoding and
+ * writes for the connections registered with this loop happen on this thread, using one direct read buffer and one
+ * direct write buffer that are shared by every connection.
+ */
+class EventLoop extends Thread {
+
+    private static final int BUFFER_BYTES = 2 * (BinaryWireCodec.MAX_FRAME_BYTES + BinaryWireCodec.LENGTH_BYTES);
+
+    private final Selector selector;
+    private final BiConsumer<Handshake, Connection> registrar;
+    private final Queue<NioConnection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final Queue<NioConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    /**
+     * @param name the name of this loop's thread
+     * @param registrar invoked on this loop's thread with the handshake of every newly connected component
+     * @throws IOException if the selector cannot be opened
+     */
+    EventLoop(String name, BiConsumer<Handshake, Connection> registrar) throws IOException {
+        super(name);
+        this.selector = Selector.open();
+        this.registrar = registrar;
+        setDaemon(true);
+    }
+
+    /**
+     * Hands a freshly accepted channel to this loop. May be called from any thread.
+     */
+    void register(SocketChannel channel) {
+        pendingRegistrations.add(new NioConnection(channel, this));
+        selector.wakeup();
+    }
+
+    /**
+     * Asks this loop to write out the queued messages of the given connection. May be called from any thread.
+     */
+    void scheduleWrite(NioConnection connection) {
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (selector.isOpen()) {
+            try {
+                selector.select();
+                registerPending();
+                writePending();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void registerPending() throws IOException {
+        NioConnection connection;
+        while ((connection = pendingRegistrations.poll()) != null) {
+            connection.channel.configureBlocking(false);
+            connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void writePending() {
+        NioConnection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            connection.writeScheduled.set(false);
+            if (connection.key != null && connection.key.isValid())
+                writeSafely(connection);
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+        try {
+            if (key.isValid() && key.isReadable())
+                read(connection);
+
+            if (key.isValid() && key.isWritable())
+                write(connection);
+        } catch (IOException e) {
+            connection.disconnected();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            connection.disconnected();
+        }
+    }
+
+    private void writeSafely(NioConnection connection) {
+        try {
+            write(connection);
+        } catch (IOException e) {
+            connection.disconnected();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            connection.disconnected();
+        }
+    }
+
+    /**
+     * Reads whatever the channel has available and decodes every complete frame. An incomplete trailing frame is copied
+     * aside and prepended to the next read.
+     */
+    private void read(NioConnection connection) throws IOException {
+        readBuffer.clear();
+        if (connection.partialFrame != null) {
+            readBuffer.put(connection.partialFrame);
+            connection.partialFrame = null;
+        }
+
+        if (connection.channel.read(readBuffer) < 0) {
+            connection.disconnected();
+            return;
+        }
+
+        readBuffer.flip();
+        Message message;
+        while ((message = BinaryWireCodec.decode(readBuffer)) != null) {
+            if (!connection.handshakeReceived) {
+                if (!(message instanceof Handshake handshake))
+                    throw new ProtocolException("Expected a handshake, received " + message);
+
+                connection.handshakeReceived = true;
+                registrar.accept(handshake, connection);
+            }
+
+            else if (!connection.deliver(message))
+                throw new ProtocolException("Received " + message + " before the connection was bound");
+        }
+
+        if (readBuffer.hasRemaining())
+            connection.partialFrame = ByteBuffer.allocate(readBuffer.remaining()).put(readBuffer).flip();
+    }
+
+    /**
+     * Encodes as many queued messages as fit into the shared write buffer and writes them out. Whatever the socket does
+     * not accept is kept on the connection, and the loop waits for the channel to become writable again.
+     */
+    private void write(NioConnection connection) throws IOException {
+        boolean drained = flushUnsent(connection) && drain(connection);
+        if (connection.key.isValid())
+            connection.key.interestOps(drained ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private boolean flushUnsent(NioConnection connection) throws IOException {
+        if (connection.unsent == null)
+            return true;
+
+        connection.channel.write(connection.unsent);
+        if (connection.unsent.hasRemaining())
+            return false;
+
+        connection.unsent = null;
+        return true;
+    }
+
+    private boolean drain(NioConnection connection) throws IOException {
+        writeBuffer.clear();
+        Message message;
+        while ((message = connection.outbound.peek()) != null) {
+            int mark = writeBuffer.position();
+            try {
+                BinaryWireCodec.encode(message, writeBuffer);
+                connection.outbound.poll();
+            } catch (BufferOverflowException e) {
+                writeBuffer.position(mark);
+                if (mark == 0)
+                    throw new ProtocolException("Frame does not fit into the write buffer: " + message);
+
+                if (!flushWriteBuffer(connection))
+                    return false;
+
+                writeBuffer.clear();
+            }
+        }
+
+        return flushWriteBuffer(connection);
+    }
+
+    private boolean flushWriteBuffer(NioConnection connection) throws IOException {
+        writeBuffer.flip();
+        connection.channel.write(writeBuffer);
+        if (!writeBuffer.hasRemaining())
+            return true;
+
+        connection.unsent = ByteBuffer.allocate(writeBuffer.remaining()).put(writeBuffer).flip();
+        return false;
+    }
+}
@@ -0,0 +1,113 @@
+package sim.conductor.nio;
+
+import sim.comms.EventDrivenConnection;
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * The {@link EventDrivenConnection} handed to the Conductor's handlers in non-blocking mode. Written messages are queued
+ * and encoded by the owning {@link EventLoop}; incoming messages are decoded by that loop and pushed to the bound
+ * callbacks.
+ */
+class NioConnection implements EventDrivenConnection {
+
+    final SocketChannel channel;
+    final Queue<Message> outbound = new ConcurrentLinkedQueue<>();
+    final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+    private final EventLoop loop;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final MessageWriter writer = new MessageWriter() {
+        @Override
+        public void write(Message message) throws IOException {
+            if (closed.get())
+                throw new IOException("Connection closed");
+
+            outbound.add(message);
+        }
+
+        @Override
+        public void flush() {
+            if (writeScheduled.compareAndSet(false, true))
+                loop.scheduleWrite(NioConnection.this);
+        }
+    };
+
+    SelectionKey key;
+    boolean handshakeReceived;
+
+    /**
+     * Bytes of a partially received frame, carried over to the next read. {@code null} when nothing is pending.
+     */
+    ByteBuffer partialFrame;
+
+    /**
+     * Encoded bytes the socket could not take yet. {@code null} when nothing is pending.
+     */
+    ByteBuffer unsent;
+
+    private Consumer<Message> onMessage;
+    private Runnable onClose;
+
+    NioConnection(SocketChannel channel, EventLoop loop) {
+        this.channel = channel;
+        this.loop = loop;
+    }
+
+    @Override
+    public void bind(Consumer<Message> onMessage, Runnable onClose) {
+        this.onMessage = onMessage;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public MessageWriter writer() {
+        return writer;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true))
+            channel.close();
+    }
+
+    /**
+     * Delivers a decoded message to the bound callback.
+     * @return false if no callback has been bound yet
+     */
+    boolean deliver(Message message) {
+        if (onMessage == null)
+            return false;
+
+        onMessage.accept(message);
+        return true;
+    }
+
+    /**
+     * Called by the owning loop once the remote component has disconnected.
+     */
+    void disconnected() {
+        boolean wasOpen = !closed.get();
+        try {
+            close();
+        } catch (IOException ignored) {
+            // The channel is being discarded either way
+        }
+
+        if (wasOpen && onClose != null)
+            onClose.run();
+    }
+}
@@ -0,0 +1,69 @@
+package sim.conductor.nio;
+
+import sim.comms.Connection;
+import sim.comms.wire.Handshake;
+import sim.conductor.Conductor;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.function.BiConsumer;
+
+/**
+ * The non-blocking counterpart of the {@link Conductor}'s blocking component listener. A single acceptor thread hands
+ * accepted channels to a fixed number of {@link EventLoop}s in round-robin order, so the amount of threads serving
+ * connected clients and workers stays the same no matter how many of them connect.
+ * <p>
+ * Non-blocking mode always speaks the binary wire protocol.
+ */
+public class NioServer {
+
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final Thread acceptor;
+
+    /**
+     * @param serverChannel a bound server channel
+     * @param loopCount how many event loops should serve connected components
+     * @param registrar invoked on an event loop thread with the handshake and connection of every newly connected
+     *                  component. It must bind the connection before returning.
+     * @throws IOException if a selector cannot be opened
+     */
+    public NioServer(ServerSocketChannel serverChannel, int loopCount, BiConsumer<Handshake, Connection> registrar)
+            throws IOException {
+        if (loopCount < 1)
+            throw new IllegalArgumentException("At least one event loop is required");
+
+        this.serverChannel = serverChannel;
+        this.loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++)
+            loops[i] = new EventLoop("conductor-loop-" + i, registrar);
+
+        this.acceptor = new Thread(this::accept, "conductor-acceptor");
+    }
+
+    /**
+     * Starts the event loops and the acceptor thread.
+     */
+    public void start() {
+        for (EventLoop loop : loops)
+            loop.start();
+
+        acceptor.start();
+    }
+
+    private void accept() {
+        int next = 0;
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            } catch (IOException e) {
+                if (serverChannel.isOpen())
+                    e.printStackTrace();
+            }
+        }
+    }
+}
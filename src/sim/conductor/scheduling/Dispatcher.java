@@ -0,0 +1,252 @@
+package sim.conductor.scheduling;
+
+import sim.conductor.Conductor;
+import sim.conductor.WorkerTracker;
+import sim.conductor.comms.WorkerHandler;
+import sim.config.Config;
+import sim.log.LOG_LEVEL;
+import sim.log.Log;
+import sim.observer.Observer;
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The Dispatcher matches the tasks collected by the {@link Conductor} with free worker slots. Collected tasks wait in a
+ * {@link ReadyQueue} and the {@link SchedulingStrategy} is asked, without ever blocking, where the oldest task of each
+ * type should go. When a task has to wait for a busy worker, only the tasks of its type wait with it: tasks of the
+ * other type keep being dispatched to whichever workers are free.
+ * <p>
+ * When work units are enabled, a task going to a worker of its own type takes up to {@code maxUnitSize - 1} more waiting
+ * tasks of that type along. The unit size is chosen per worker so that a unit takes about {@code unitTargetMillis}, based
+ * on how long that worker's tasks have taken so far. Fine-grained tasks then share the cost of a round trip.
+ * <p>
+ * Tasks that were lost along with their worker are resubmitted ahead of every waiting task, so that they are the first
+ * to be dispatched again. Tasks that straggle on their worker may be hedged: when no task is waiting at all, a
+ * speculative copy is sent to a free worker of the task's own type.
+ * <p>
+ * Tasks are submitted from any thread, and the Dispatcher observes the {@link WorkerTracker} to learn about freed
+ * slots. Either event wakes up the thread running the Dispatcher, which then dispatches everything it can.
+ */
+public class Dispatcher implements Runnable, Observer {
+
+    private static final TASK_TYPE[] TYPES = TASK_TYPE.values();
+
+    private final SchedulingStrategy strategy;
+    private final WorkerTracker workers;
+    private final ReadyQueue readyTasks = new ReadyQueue();
+    private final Queue<Task> submittedTasks = new ConcurrentLinkedQueue<>();
+    private final Queue<Task> resubmittedTasks = new ConcurrentLinkedQueue<>();
+    private final Queue<Task> stragglers = new ConcurrentLinkedQueue<>();
+    private final Semaphore wakeUps = new Semaphore(0);
+    private final Task[] announcedWaits = new Task[TYPES.length];
+    private final int maxUnitSize;
+    private final long unitTargetMillis;
+
+    /**
+     * Creates a Dispatcher that uses the work unit settings of {@link Config#unitSize()} and
+     * {@link Config#unitTargetMillis()}.
+     * @param strategy the strategy that decides where each task goes
+     * @param workers the tracker of all connected workers and their free slots
+     */
+    public Dispatcher(SchedulingStrategy strategy, WorkerTracker workers) {
+        this(strategy, workers, Config.unitSize(), Config.unitTargetMillis());
+    }
+
+    /**
+     * @param strategy the strategy that decides where each task goes
+     * @param workers the tracker of all connected workers and their free slots
+     * @param maxUnitSize up to how many tasks of one type are sent to a worker of that type at once; 1 to send every task
+     *                    on its own
+     * @param unitTargetMillis how long a work unit should take
+     */
+    public Dispatcher(SchedulingStrategy strategy, WorkerTracker workers, int maxUnitSize, long unitTargetMillis) {
+        this.strategy = strategy;
+        this.workers = workers;
+        this.maxUnitSize = Math.max(1, maxUnitSize);
+        this.unitTargetMillis = unitTargetMillis;
+    }
+
+    /**
+     * Hands a collected task to the Dispatcher. Never blocks.
+     * @param task the task that requires assignment
+     */
+    public void submit(Task task) {
+        submittedTasks.add(task);
+        wakeUp();
+    }
+
+    /**
+     * Hands several collected tasks to the Dispatcher at once, in order. Never blocks.
+     * @param tasks the tasks that require assignment
+     */
+    public void submitAll(Collection<Task> tasks) {
+        submittedTasks.addAll(tasks);
+        wakeUp();
+    }
+
+    /**
+     * Hands back tasks that were assigned to a worker but have to be performed again, for example because the worker has
+     * disconnected. They are dispatched before every task that is waiting. Never blocks.
+     * @param tasks the tasks that require assignment again
+     */
+    public void resubmitAll(Collection<Task> tasks) {
+        resubmittedTasks.addAll(tasks);
+        wakeUp();
+    }
+
+    /**
+     * Asks for speculative copies of tasks that take unusually long on their worker. A copy is only sent if a worker of
+     * the task's own type is free and no task is waiting; otherwise the request is dropped. Never blocks.
+     * @param tasks the straggling tasks
+     */
+    public void hedgeAll(Collection<Task> tasks) {
+        stragglers.addAll(tasks);
+        wakeUp();
+    }
+
+    /**
+     * Wakes up the Dispatcher whenever the {@link WorkerTracker} it observes has a new free slot.
+     * @param o the tracker
+     */
+    @Override
+    public void update(Object o) {
+        wakeUp();
+    }
+
+    /**
+     * A single pending wake-up is enough, as the Dispatcher handles everything that happened before it wakes up.
+     */
+    private void wakeUp() {
+        if (wakeUps.availablePermits() == 0)
+            wakeUps.release();
+    }
+
+    /**
+     * Waits for submitted tasks and freed slots and dispatches as much as possible after each of them.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                wakeUps.acquire();
+                wakeUps.drainPermits();
+                dispatchAvailable();
+            }
+        } catch (InterruptedException e) {
+            Log.info("CONDUCTOR: Dispatcher was interrupted");
+        }
+    }
+
+    /**
+     * Dispatches only if something was submitted or a slot was freed since the last time the Dispatcher ran. Used to
+     * drive the Dispatcher from an existing event loop instead of a dedicated thread.
+     * @return the amount of tasks that were dispatched
+     */
+    public int dispatchPending() {
+        if (!wakeUps.tryAcquire())
+            return 0;
+
+        return dispatchAvailable();
+    }
+
+    /**
+     * Moves submitted tasks into the ready queue, resubmitted ones at its head, and assigns waiting tasks to free slots until no further assignment is
+     * possible. The oldest task is considered first, and a type whose oldest task cannot be placed is skipped so that
+     * it does not hold up the other type.
+     * @return the amount of tasks that were dispatched
+     */
+    public int dispatchAvailable() {
+        Task submitted;
+        while ((submitted = submittedTasks.poll()) != null)
+            readyTasks.offer(submitted);
+
+        while ((submitted = resubmittedTasks.poll()) != null)
+            readyTasks.offerFirst(submitted);
+
+        int dispatched = 0;
+        boolean progress = true;
+        while (progress && !readyTasks.isEmpty()) {
+            progress = false;
+            int first = readyTasks.oldestType().ordinal();
+            for (int i = 0; i < TYPES.length; i++) {
+                TASK_TYPE type = TYPES[(first + i) % TYPES.length];
+                Task task = readyTasks.peek(type);
+                if (task == null)
+                    continue;
+
+                WorkerHandler assignedWorker = strategy.select(task, workers, readyTasks);
+                if (assignedWorker == null) {
+                    announceWait(type, task);
+                    continue;
+                }
+
+                readyTasks.poll(type);
+                List<Task> unit = formUnit(task, assignedWorker);
+                if (unit.size() == 1)
+                    Log.trace("CONDUCTOR: Worker(%d) was assigned %s", assignedWorker.getComponentID().refID(), task);
+
+                else Log.trace("CONDUCTOR: Worker(%d) was assigned %d tasks of type %s",
+                        assignedWorker.getComponentID().refID(), unit.size(), type);
+                assignedWorker.sendTasks(unit);
+                dispatched += unit.size();
+                progress = true;
+            }
+        }
+
+        return dispatched + hedgeStragglers();
+    }
+
+    /**
+     * Sends speculative copies of straggling tasks to idle workers of their own type, as long as no task is waiting.
+     */
+    private int hedgeStragglers() {
+        int hedged = 0;
+        Task straggler;
+        while ((straggler = stragglers.poll()) != null) {
+            if (!readyTasks.isEmpty())
+                continue;
+
+            WorkerHandler worker = workers.pollHandler(straggler.type());
+            if (worker != null && worker.hedge(straggler)) {
+                Log.trace("CONDUCTOR: Worker(%d) was assigned a copy of straggling %s", worker.getComponentID().refID(), straggler);
+                hedged++;
+            }
+        }
+
+        return hedged;
+    }
+
+    /**
+     * Puts together the work unit that starts with the given task, which has already been taken off the ready queue.
+     * Only workers of the task's own type receive units of more than one task.
+     */
+    private List<Task> formUnit(Task task, WorkerHandler assignedWorker) {
+        if (maxUnitSize == 1 || assignedWorker.getWorkerType() != task.type())
+            return List.of(task);
+
+        int size = assignedWorker.unitSize(maxUnitSize, unitTargetMillis);
+        List<Task> unit = new ArrayList<>(size);
+        unit.add(task);
+        while (unit.size() < size && readyTasks.peek(task.type()) != null)
+            unit.add(readyTasks.poll(task.type()));
+
+        return unit;
+    }
+
+    /**
+     * Lets the user know, once per task, that the oldest task of a type is waiting on a worker.
+     */
+    private void announceWait(TASK_TYPE type, Task task) {
+        if (Log.enabled(LOG_LEVEL.TRACE) && announcedWaits[type.ordinal()] != task) {
+            announcedWaits[type.ordinal()] = task;
+            Log.trace("CONDUCTOR: Waiting on a Worker for %s", task);
+        }
+    }
+}
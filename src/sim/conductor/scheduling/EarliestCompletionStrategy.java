@@ -0,0 +1,44 @@
+package sim.conductor.scheduling;
+
+import sim.conductor.WorkerTracker;
+import sim.conductor.comms.WorkerHandler;
+import sim.config.Config;
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+/**
+ * A cost-aware strategy that assigns every task to the worker expected to complete it the earliest. For each connected
+ * worker, the expected completion is the moment one of its slots frees up, according to the worker's current backlog,
+ * plus the cost of the task on that worker: {@link Config#sameTypeMillis()} or {@link Config#crossTypeMillis()}.
+ * <p>
+ * All workers of one type cost the same, so once the best type is known any free slot of that type is as good as the
+ * one the estimate came from. If no slot of that type is free, the task waits for the first one to free up, which is
+ * the earliest one by definition.
+ */
+public class EarliestCompletionStrategy implements SchedulingStrategy {
+
+    public static final String NAME = "ect";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public WorkerHandler select(Task task, WorkerTracker workers, ReadyQueue readyTasks) {
+        TASK_TYPE bestType = task.type();
+        long bestCompletion = Long.MAX_VALUE;
+
+        for (TASK_TYPE workerType : TASK_TYPE.values()) {
+            for (WorkerHandler handler : workers.handlers(workerType)) {
+                long completion = handler.expectedCompletion(task);
+                if (completion < bestCompletion) {
+                    bestCompletion = completion;
+                    bestType = workerType;
+                }
+            }
+        }
+
+        return workers.pollHandler(bestType);
+    }
+}
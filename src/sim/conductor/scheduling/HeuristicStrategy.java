@@ -0,0 +1,59 @@
+package sim.conductor.scheduling;
+
+import sim.conductor.WorkerTracker;
+import sim.conductor.comms.WorkerHandler;
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+import static sim.task.TASK_TYPE.A;
+import static sim.task.TASK_TYPE.B;
+
+/**
+ * The original algorithm of the Conductor. Based on certain variables, the strategy will choose the best Worker to
+ * work on the given task. (If only one type of Worker is connected to the Conductor, then a Worker of that type
+ * must be chosen).
+ * <p>
+ * Since a Worker whose type matches the type of a given task takes only 2 seconds to complete, while a
+ * Worker whose type doesn't match the type of a given task takes 10 seconds to complete the task, the ideal choice
+ * of Worker will be of a similar type to the given task. However, if no such Worker is available at the present
+ * moment, a Worker of a different type may be chosen under the following circumstances:
+ * <p>
+ * 1) there are a sufficient number of tasks remaining so that all the Workers of the matching type would be occupied during the extra time that
+ * the Worker whose type doesn't match can complete the task,
+ * <p>
+ * 2) all of these tasks are of the same type as the given task,
+ * <p>
+ * 3) a Worker of a different type is presently available. In the event that any of these conditions is false, the
+ * task waits until a Worker of a similar type to the given task becomes available.
+ */
+public class HeuristicStrategy implements SchedulingStrategy {
+
+    public static final String NAME = "heuristic";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public WorkerHandler select(Task task, WorkerTracker workers, ReadyQueue readyTasks) {
+        TASK_TYPE other = task.type() == A ? B : A;
+
+        if (!workers.isConnected(task.type()))
+            return workers.pollHandler(other);
+
+        if (!workers.isConnected(other))
+            return workers.pollHandler(task.type());
+
+        WorkerHandler handler = workers.pollHandler(task.type());
+        if (handler != null)
+            return handler;
+
+        // Only worth it if every slot of the matching type stays busy with tasks of this type while the other one works
+        int lookahead = 5 * workers.slots(task.type());
+        if (readyTasks.size() - 1 > lookahead && readyTasks.isRunAfterHead(task.type(), lookahead))
+            return workers.pollHandler(other);
+
+        return null;
+    }
+}
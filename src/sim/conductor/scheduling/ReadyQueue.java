@@ -0,0 +1,184 @@
+package sim.conductor.scheduling;
+
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+import java.util.ArrayDeque;
+
+/**
+ * The tasks that have been collected from clients and are waiting for a worker, kept in a separate first-in-first-out
+ * queue per {@link TASK_TYPE}. A task that has to wait for a busy worker therefore only holds up the tasks of its own
+ * type.
+ * <p>
+ * The order in which tasks arrived is kept as a list of runs: each run counts consecutive tasks of one type. Runs are
+ * updated incrementally as tasks are added and removed, so the amount of waiting tasks of every type and the length of
+ * the same-type run at the head are known at all times. Lookahead decisions take constant time and, once the queue has
+ * warmed up, do not allocate: emptied runs are recycled.
+ * <p>
+ * A ReadyQueue is owned by a single {@link Dispatcher} and is not thread safe.
+ */
+public class ReadyQueue {
+
+    private final ArrayDeque<Task>[] queues;
+    private final ArrayDeque<Run> runs = new ArrayDeque<>();
+    private final ArrayDeque<Run> spareRuns = new ArrayDeque<>();
+    private int size;
+
+    /**
+     * A maximal sequence of consecutively arrived tasks of the same type.
+     */
+    private static class Run {
+        TASK_TYPE type;
+        int length;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ReadyQueue() {
+        queues = new ArrayDeque[TASK_TYPE.values().length];
+        for (int i = 0; i < queues.length; i++)
+            queues[i] = new ArrayDeque<>();
+    }
+
+    /**
+     * Adds a task behind every task that arrived before it.
+     * @param task the task to add
+     */
+    public void offer(Task task) {
+        queues[task.type().ordinal()].addLast(task);
+        size++;
+
+        Run last = runs.peekLast();
+        if (last != null && last.type == task.type()) {
+            last.length++;
+            return;
+        }
+
+        Run run = spareRuns.isEmpty() ? new Run() : spareRuns.pollFirst();
+        run.type = task.type();
+        run.length = 1;
+        runs.addLast(run);
+    }
+
+    /**
+     * Adds a task ahead of every waiting task, as if it had arrived first. Used for tasks that have to be performed again.
+     * @param task the task to add
+     */
+    public void offerFirst(Task task) {
+        queues[task.type().ordinal()].addFirst(task);
+        size++;
+
+        Run first = runs.peekFirst();
+        if (first != null && first.type == task.type()) {
+            first.length++;
+            return;
+        }
+
+        Run run = spareRuns.isEmpty() ? new Run() : spareRuns.pollFirst();
+        run.type = task.type();
+        run.length = 1;
+        runs.addFirst(run);
+    }
+
+    /**
+     * @param type a task type
+     * @return the oldest waiting task of the given type, or {@code null} if there is none
+     */
+    public Task peek(TASK_TYPE type) {
+        return queues[type.ordinal()].peekFirst();
+    }
+
+    /**
+     * Removes and returns the oldest waiting task of the given type.
+     * @param type a task type
+     * @return the removed task, or {@code null} if there is none
+     */
+    public Task poll(TASK_TYPE type) {
+        Task task = queues[type.ordinal()].pollFirst();
+        if (task == null)
+            return null;
+
+        size--;
+        shortenFirstRun(type);
+        return task;
+    }
+
+    /**
+     * Accounts for the removal of the oldest task of the given type, which belongs to the first run of that type.
+     */
+    private void shortenFirstRun(TASK_TYPE type) {
+        Run first = runs.peekFirst();
+        if (first.type == type) {
+            if (--first.length == 0)
+                spareRuns.addLast(runs.pollFirst());
+
+            return;
+        }
+
+        // Adjacent runs never share a type, so with two task types the second run is the first one of the other type
+        runs.pollFirst();
+        Run second = runs.peekFirst();
+        if (--second.length == 0) {
+            spareRuns.addLast(runs.pollFirst());
+            Run third = runs.peekFirst();
+            if (third != null && third.type == first.type) {
+                // The emptied run separated two runs of the same type, which now form a single run
+                third.length += first.length;
+                spareRuns.addLast(first);
+                return;
+            }
+        }
+
+        runs.addFirst(first);
+    }
+
+    /**
+     * @return the type of the oldest waiting task, or {@code null} if no task is waiting
+     */
+    public TASK_TYPE oldestType() {
+        Run first = runs.peekFirst();
+        return first == null ? null : first.type;
+    }
+
+    /**
+     * @return how many of the oldest waiting tasks are of the same type, i.e. the length of the run at the head
+     */
+    public int headRunLength() {
+        Run first = runs.peekFirst();
+        return first == null ? 0 : first.length;
+    }
+
+    /**
+     * Tests whether the given amount of tasks that arrived first, leaving out the oldest task of the given type, are all
+     * of the given type.
+     * @param type a task type
+     * @param count how many tasks to look at
+     * @return true if at least {@code count} tasks besides the oldest one of the given type are waiting, and the oldest
+     * {@code count} of those are all of the given type
+     */
+    public boolean isRunAfterHead(TASK_TYPE type, int count) {
+        Run first = runs.peekFirst();
+        return first != null && first.type == type && first.length > count;
+    }
+
+    /**
+     * @param type a task type
+     * @return the amount of waiting tasks of the given type
+     */
+    public int size(TASK_TYPE type) {
+        return queues[type.ordinal()].size();
+    }
+
+    /**
+     * @return the amount of waiting tasks of all types
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if no task is waiting
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,31 @@
+package sim.conductor.scheduling;
+
+import sim.config.Config;
+
+/**
+ * Lookup for the {@link SchedulingStrategy}s that ship with the simulation.
+ */
+public final class SchedulingStrategies {
+
+    private SchedulingStrategies() {}
+
+    /**
+     * @param name the name of a strategy: {@value HeuristicStrategy#NAME} or {@value EarliestCompletionStrategy#NAME}
+     * @return the strategy with the given name
+     * @throws IllegalArgumentException if no strategy goes by that name
+     */
+    public static SchedulingStrategy named(String name) {
+        return switch (name) {
+            case HeuristicStrategy.NAME -> new HeuristicStrategy();
+            case EarliestCompletionStrategy.NAME -> new EarliestCompletionStrategy();
+            default -> throw new IllegalArgumentException("Unknown scheduler: " + name);
+        };
+    }
+
+    /**
+     * @return the strategy selected via {@link Config#scheduler()}
+     */
+    public static SchedulingStrategy defaultStrategy() {
+        return named(Config.scheduler());
+    }
+}
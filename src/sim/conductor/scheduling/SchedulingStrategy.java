@@ -0,0 +1,31 @@
+package sim.conductor.scheduling;
+
+import sim.conductor.Conductor;
+import sim.conductor.WorkerTracker;
+import sim.conductor.comms.WorkerHandler;
+import sim.task.Task;
+
+/**
+ * A SchedulingStrategy decides which worker the {@link Conductor} assigns each collected task to. It is consulted by the
+ * {@link Dispatcher} and must never block. See {@link SchedulingStrategies} for the strategies that ship with the
+ * simulation.
+ */
+public interface SchedulingStrategy {
+
+    /**
+     * @return the name used to select this strategy, e.g. via the {@code sim.scheduler} system property
+     */
+    String name();
+
+    /**
+     * Chooses the worker that should perform the given task and takes one of its free slots. If the task should rather
+     * wait for a worker that is busy at the moment, nothing is taken and {@code null} is returned; the task is offered
+     * again once a slot frees up.
+     * @param task the oldest waiting task of its type, which requires assignment
+     * @param workers the tracker of all connected workers and their free slots
+     * @param readyTasks every task waiting to be assigned, including the given one
+     * @return a WorkerHandler that will handle the communication with the chosen worker meant to complete the given
+     * task, or {@code null} if the task should wait
+     */
+    WorkerHandler select(Task task, WorkerTracker workers, ReadyQueue readyTasks);
+}
@@ -0,0 +1,188 @@
+package sim.conductor.wal;
+
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * One file of the {@link TaskLog}, mapped into memory in its full size up front. Records are appended by writing into
+ * the mapping, so that an append costs no system call, and reach the disk once the mapping is forced.
+ * <p>
+ * Every record takes {@value #RECORD_BYTES} bytes: its {@link RECORD_TYPE} code, the task type, a check of the other
+ * fields, the client ID, the task ID and the ID of the worker it was assigned to, if any. The record type is written
+ * last, so a record that was cut short is never mistaken for a complete one. The unused rest of the file reads as
+ * zeros, which ends the records.
+ * <p>
+ * A segment also counts its live records: those accepting tasks that have not been completed yet. Once none are left,
+ * the segment is no longer needed.
+ */
+final class LogSegment {
+
+    static final int RECORD_BYTES = 16;
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final TASK_TYPE[] TASK_TYPES = TASK_TYPE.values();
+
+    private final long sequence;
+    private final Path path;
+    private MappedByteBuffer buffer;
+    private int position;
+    private int forced;
+    int live;
+
+    private LogSegment(long sequence, Path path, MappedByteBuffer buffer, int position) {
+        this.sequence = sequence;
+        this.path = path;
+        this.buffer = buffer;
+        this.position = position;
+        this.forced = position;
+    }
+
+    /**
+     * Creates a new, empty segment file and maps it.
+     * @param dir the directory of the log
+     * @param sequence the number of the segment, one more than the segment before it
+     * @param bytes the size of the segment
+     * @return the new segment
+     * @throws IOException if the file cannot be created or mapped
+     */
+    static LogSegment create(Path dir, long sequence, int bytes) throws IOException {
+        Path path = dir.resolve(String.format("%s%016d%s", PREFIX, sequence, SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, CREATE_NEW, READ, WRITE)) {
+            return new LogSegment(sequence, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes), 0);
+        }
+    }
+
+    /**
+     * Opens an existing segment file, to replay its records. Nothing is ever appended to an existing segment again.
+     * @param path the segment file
+     * @return the segment
+     * @throws IOException if the file cannot be mapped
+     */
+    static LogSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            return new LogSegment(sequenceOf(path), path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), 0);
+        }
+    }
+
+    /**
+     * Reads every intact record of a segment that has just been opened, up to the first that is missing or cut short.
+     * @param record receives the type and task of every record, in order
+     */
+    void replay(BiConsumer<RECORD_TYPE, Task> record) {
+        while (position + RECORD_BYTES <= buffer.capacity()) {
+            RECORD_TYPE type = RECORD_TYPE.of(buffer.get(position));
+            int taskType = buffer.get(position + 1);
+            int clientID = buffer.getInt(position + 4);
+            int taskID = buffer.getInt(position + 8);
+            int workerID = buffer.getInt(position + 12);
+            if (type == null || taskType < 0 || taskType >= TASK_TYPES.length
+                    || buffer.getShort(position + 2) != check(type.code(), taskType, clientID, taskID, workerID))
+                break;
+
+            record.accept(type, new Task(clientID, taskID, TASK_TYPES[taskType]));
+            position += RECORD_BYTES;
+        }
+
+        forced = position;
+        buffer = null;
+    }
+
+    /**
+     * @param file a file in the directory of the log
+     * @return true if the file is a segment of the log
+     */
+    static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static short check(byte type, int taskType, int clientID, int taskID, int workerID) {
+        int hash = clientID * 0x9E3779B1 + taskID;
+        hash = hash * 0x9E3779B1 + workerID;
+        hash = hash * 0x9E3779B1 + (type << 8 | taskType);
+        return (short) (hash ^ hash >>> 16);
+    }
+
+    /**
+     * Appends a record, unless the segment is full.
+     * @param type the type of the record
+     * @param task the task the record is about
+     * @param workerID the ID of the worker the task was assigned to, or 0
+     * @return false if the segment is full, true otherwise
+     */
+    boolean append(RECORD_TYPE type, Task task, int workerID) {
+        if (buffer == null || position + RECORD_BYTES > buffer.capacity())
+            return false;
+
+        int taskType = task.type().ordinal();
+        buffer.put(position + 1, (byte) taskType);
+        buffer.putShort(position + 2, check(type.code(), taskType, task.clientID(), task.taskID(), workerID));
+        buffer.putInt(position + 4, task.clientID());
+        buffer.putInt(position + 8, task.taskID());
+        buffer.putInt(position + 12, workerID);
+        buffer.put(position, type.code());
+        position += RECORD_BYTES;
+        return true;
+    }
+
+    /**
+     * @return how many bytes of records the segment holds
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * @return true if records have been appended since the segment was last forced
+     */
+    boolean isDirty() {
+        return forced < position;
+    }
+
+    /**
+     * Forces the records up to the given position to disk. Called by a single thread at a time, while records may still
+     * be appended beyond that position.
+     * @param upTo the position of the segment when the commit began
+     */
+    void force(int upTo) {
+        if (buffer == null || upTo <= forced)
+            return;
+
+        buffer.force(forced, upTo - forced);
+        forced = upTo;
+    }
+
+    /**
+     * Deletes the segment file.
+     * @throws IOException if the file cannot be deleted
+     */
+    void delete() throws IOException {
+        buffer = null;
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public String toString() {
+        return path.getFileName() + " (" + live + " live records)";
+    }
+
+    long sequence() {
+        return sequence;
+    }
+}
@@ -0,0 +1,37 @@
+package sim.conductor.wal;
+
+/**
+ * The events of a task's life that the {@link TaskLog} records. Each is stored as its own non-zero code, so that a
+ * zero byte marks the end of the records in a segment.
+ */
+public enum RECORD_TYPE {
+    /**
+     * The Conductor has accepted the task from its client.
+     */
+    ACCEPT,
+    /**
+     * The task has been sent to a worker.
+     */
+    ASSIGN,
+    /**
+     * The task has been completed and is on its way back to its client.
+     */
+    COMPLETE;
+
+    private static final RECORD_TYPE[] TYPES = values();
+
+    /**
+     * @return the code the record type is stored as
+     */
+    byte code() {
+        return (byte) (ordinal() + 1);
+    }
+
+    /**
+     * @param code a stored code
+     * @return the record type stored as the given code, or {@code null} if there is none
+     */
+    static RECORD_TYPE of(byte code) {
+        return code > 0 && code <= TYPES.length ? TYPES[code - 1] : null;
+    }
+}
@@ -0,0 +1,435 @@
+package sim.conductor.wal;
+
+import sim.concurrent.Threads;
+import sim.conductor.Conductor;
+import sim.config.Config;
+import sim.log.Log;
+import sim.task.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * The write-ahead log of the {@link Conductor}'s task state. Every task the Conductor accepts from a client, sends to a
+ * worker and completes is recorded here, so that a Conductor that is restarted on the same directory knows every task
+ * it had accepted and not completed yet, and which of them were already being worked on.
+ * <p>
+ * The log is a series of {@link LogSegment}s of {@link Config#walSegmentBytes()} each, mapped into memory. Appending a
+ * record only writes to memory, under a short lock. Records are committed in groups: a background thread forces
+ * everything appended since the last commit to disk every {@link Config#walSyncMillis()}, so the cost of a sync is
+ * shared by every task accepted in the meantime instead of being paid per task. Appends never wait for a commit.
+ * Since the mapping lives in the page cache, a Conductor process that crashes loses none of its records; a machine
+ * that crashes loses at most the records of the last sync interval, which clients that reattach send again.
+ * <p>
+ * The lock guarding the log is a {@link ReentrantLock} rather than a monitor, since the handlers appending to it may
+ * run on virtual threads, which a monitor would pin to their carrier.
+ * <p>
+ * Segments are compacted as tasks complete. Segments are only ever deleted from the oldest end of the log, once they
+ * hold records of completed tasks only: a newer segment may hold the records completing or assigning tasks that an
+ * older one accepted, and those must outlive the acceptance. An oldest segment of which little is still live has its
+ * live tasks accepted again at the head of the log, after which it is deleted as well. The log therefore stays about
+ * as large as the tasks the Conductor holds, however long it runs.
+ */
+public class TaskLog implements AutoCloseable {
+
+    private static final int COMPACT_DIVISOR = 4;
+
+    private final Path dir;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int segmentBytes;
+    private final long syncMillis;
+    private final Map<Long, Placement> live = new LinkedHashMap<>();
+    private final Deque<LogSegment> sealed = new ArrayDeque<>();
+    private final Map<Integer, List<Task>> recovered = new LinkedHashMap<>();
+    private int recoveredInFlight;
+    private LogSegment head;
+    private long records;
+    private final AtomicLong commits = new AtomicLong();
+    private Thread committer;
+    private volatile boolean closed;
+
+    /**
+     * A live task and the segment holding the record that accepted it.
+     */
+    private record Placement(Task task, LogSegment segment) {}
+
+    /**
+     * Opens the log in {@link Config#walDir()}, recovers its tasks and starts committing.
+     * @return the opened log
+     * @throws IOException if the directory or its segments cannot be read, or the first new segment cannot be created
+     */
+    public static TaskLog open() throws IOException {
+        return open(Config.walDir(), Config.walSegmentBytes(), Config.walSyncMillis());
+    }
+
+    /**
+     * Opens the log in the given directory, creating it if needed, recovers its tasks and starts committing.
+     * @param dir the directory of the log
+     * @param segmentBytes how large each segment is
+     * @param syncMillis how often appended records are forced to disk
+     * @return the opened log
+     * @throws IOException if the directory or its segments cannot be read, or the first new segment cannot be created
+     */
+    public static TaskLog open(Path dir, int segmentBytes, long syncMillis) throws IOException {
+        if (segmentBytes < LogSegment.RECORD_BYTES)
+            throw new IllegalArgumentException("A segment must hold at least one record");
+
+        TaskLog log = new TaskLog(dir, segmentBytes, syncMillis);
+        log.recover();
+        log.committer = Threads.start("conductor-wal", log::commitPeriodically);
+        return log;
+    }
+
+    private TaskLog(Path dir, int segmentBytes, long syncMillis) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.syncMillis = Math.max(1, syncMillis);
+    }
+
+    private static long key(Task task) {
+        return (long) task.clientID() << 32 | (task.taskID() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Replays every segment in order, and starts a new one for the records to come. The oldest segments without live
+     * records are deleted right away.
+     */
+    private void recover() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(LogSegment::isSegment).sorted().toList();
+        }
+
+        Set<Long> inFlight = new HashSet<>();
+        long sequence = 0;
+        for (Path file : files) {
+            LogSegment segment = LogSegment.open(file);
+            segment.replay((type, task) -> {
+                switch (type) {
+                    case ACCEPT -> place(task, segment);
+                    case ASSIGN -> inFlight.add(key(task));
+                    case COMPLETE -> {
+                        Placement placement = live.remove(key(task));
+                        if (placement != null)
+                            placement.segment().live--;
+                        inFlight.remove(key(task));
+                    }
+                }
+            });
+
+            sealed.addLast(segment);
+            sequence = segment.sequence();
+        }
+
+        head = LogSegment.create(dir, sequence + 1, segmentBytes);
+        while (!sealed.isEmpty() && sealed.peekFirst().live == 0)
+            sealed.removeFirst().delete();
+
+        for (Placement placement : live.values()) {
+            if (inFlight.contains(key(placement.task()))) {
+                recovered.computeIfAbsent(placement.task().clientID(), id -> new ArrayList<>()).add(placement.task());
+                recoveredInFlight++;
+            }
+        }
+
+        for (Placement placement : live.values()) {
+            if (!inFlight.contains(key(placement.task())))
+                recovered.computeIfAbsent(placement.task().clientID(), id -> new ArrayList<>()).add(placement.task());
+        }
+    }
+
+    /**
+     * Makes the given segment the home of a live task, moving it out of the segment that held it before, if any.
+     */
+    private void place(Task task, LogSegment segment) {
+        Placement previous = live.put(key(task), new Placement(task, segment));
+        if (previous != null)
+            previous.segment().live--;
+
+        segment.live++;
+    }
+
+    /**
+     * Records tasks that the Conductor has just received from a client. Tasks that are already live, because the client
+     * sent them again after reattaching, are left out.
+     * @param tasks the received tasks
+     * @return the tasks that were accepted, in order
+     */
+    public List<Task> accept(List<Task> tasks) {
+        List<Task> accepted = null;
+        lock.lock();
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                Task task = tasks.get(i);
+                if (!live.containsKey(key(task))) {
+                    append(RECORD_TYPE.ACCEPT, task, 0);
+                    place(task, head);
+                    if (accepted != null)
+                        accepted.add(task);
+                    continue;
+                }
+
+                Log.trace("CONDUCTOR: Ignored %s, it has already been accepted", task);
+                if (accepted == null)
+                    accepted = new ArrayList<>(tasks.subList(0, i));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return accepted == null ? tasks : accepted;
+    }
+
+    /**
+     * Records that tasks have been sent to a worker.
+     * @param unit the tasks sent
+     * @param workerID the ID of the worker they were sent to
+     */
+    public void assign(List<Task> unit, int workerID) {
+        lock.lock();
+        try {
+            for (Task task : unit)
+                append(RECORD_TYPE.ASSIGN, task, workerID);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that tasks have been completed. They are no longer live, and will not be recovered.
+     * @param tasks the tasks completed for the first time
+     */
+    public void complete(List<Task> tasks) {
+        lock.lock();
+        try {
+            for (Task task : tasks) {
+                Placement placement = live.remove(key(task));
+                if (placement == null)
+                    continue;
+
+                append(RECORD_TYPE.COMPLETE, task, 0);
+                placement.segment().live--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that recovered tasks have been given up on, because their client did not reattach in time. They are no
+     * longer live, and will not be recovered again.
+     * @param tasks the tasks given up on
+     */
+    public void discard(List<Task> tasks) {
+        complete(tasks);
+    }
+
+    private void append(RECORD_TYPE type, Task task, int workerID) {
+        if (!head.append(type, task, workerID)) {
+            sealed.addLast(head);
+            try {
+                head = LogSegment.create(dir, head.sequence() + 1, segmentBytes);
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot roll the write-ahead log over to a new segment", e);
+            }
+
+            head.append(type, task, workerID);
+        }
+
+        records++;
+    }
+
+    /**
+     * Commits and compacts the log every {@link #syncMillis} milliseconds until it is closed.
+     */
+    private void commitPeriodically() {
+        try {
+            while (!closed) {
+                Thread.sleep(syncMillis);
+                commit();
+                compact();
+            }
+        } catch (InterruptedException e) {
+            // The log is being closed
+        }
+    }
+
+    /**
+     * Forces every record appended so far to disk, and then deletes the oldest segments that, like every segment before
+     * them, held only completed tasks by the time the commit began. Records appended while the commit is in progress are
+     * left to the next one.
+     */
+    public void commit() {
+        List<LogSegment> dirty = new ArrayList<>();
+        int empty = 0;
+        LogSegment currentHead;
+        int headPosition;
+        boolean headDirty;
+        lock.lock();
+        try {
+            boolean oldest = true;
+            for (LogSegment segment : sealed) {
+                if (segment.isDirty())
+                    dirty.add(segment);
+                oldest &= segment.live == 0;
+                if (oldest)
+                    empty++;
+            }
+
+            currentHead = head;
+            headPosition = head.position();
+            headDirty = head.isDirty();
+        } finally {
+            lock.unlock();
+        }
+
+        for (LogSegment segment : dirty)
+            segment.force(segment.position());
+        currentHead.force(headPosition);
+        if (headDirty || !dirty.isEmpty())
+            commits.incrementAndGet();
+
+        for (int i = 0; i < empty; i++) {
+            LogSegment segment;
+            lock.lock();
+            try {
+                segment = sealed.removeFirst();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                segment.delete();
+                Log.trace("CONDUCTOR: Deleted write-ahead log segment %s", segment);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Accepts the live tasks of the oldest sealed segments that are less than a quarter live again at the head of the
+     * log, up to the first segment that is more live than that. The segments are then empty, and are deleted by the next
+     * commit, once the copies are on disk. Sparse segments behind a busier one are left alone, since they could not be
+     * deleted before it anyway.
+     */
+    private void compact() {
+        lock.lock();
+        try {
+            Set<LogSegment> sparse = new HashSet<>();
+            for (LogSegment segment : sealed) {
+                if ((long) segment.live * LogSegment.RECORD_BYTES * COMPACT_DIVISOR > segmentBytes)
+                    break;
+                if (segment.live > 0)
+                    sparse.add(segment);
+            }
+
+            if (sparse.isEmpty())
+                return;
+
+            int moved = 0;
+            for (Map.Entry<Long, Placement> entry : live.entrySet()) {
+                Placement placement = entry.getValue();
+                if (!sparse.contains(placement.segment()))
+                    continue;
+
+                append(RECORD_TYPE.ACCEPT, placement.task(), 0);
+                placement.segment().live--;
+                head.live++;
+                entry.setValue(new Placement(placement.task(), head));
+                moved++;
+            }
+
+            Log.trace("CONDUCTOR: Compacted %d write-ahead log segments, moving %d live tasks", sparse.size(), moved);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the tasks that were live when the log was opened, per client ID. Tasks that had been sent to a worker come
+     * first, in the order they were accepted, followed by the tasks that were still waiting.
+     */
+    public Map<Integer, List<Task>> recovered() {
+        return recovered;
+    }
+
+    /**
+     * @return how many of the recovered tasks had been sent to a worker
+     */
+    public int recoveredInFlight() {
+        return recoveredInFlight;
+    }
+
+    /**
+     * @return how many tasks are live: accepted and not completed yet
+     */
+    public int live() {
+        lock.lock();
+        try {
+            return live.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return how many records have been appended since the log was opened
+     */
+    public long records() {
+        lock.lock();
+        try {
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return how many commits have forced records to disk
+     */
+    public long commits() {
+        return commits.get();
+    }
+
+    /**
+     * @return how many segments the log currently consists of
+     */
+    public int segments() {
+        lock.lock();
+        try {
+            return sealed.size() + 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops committing periodically and commits whatever has been appended since the last commit.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        committer.interrupt();
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        commit();
+    }
+}
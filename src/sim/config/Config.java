@@ -0,0 +1,290 @@
+package sim.config;
+
+import sim.comms.TRANSPORT;
+import sim.comms.wire.TaskBatch;
+import sim.concurrent.THREAD_MODE;
+import sim.conductor.IO_MODE;
+import sim.log.LOG_LEVEL;
+import sim.task.TASK_TYPE;
+
+import java.nio.file.Path;
+
+/**
+ * Central place for the runtime options of the simulation. Every option is read from a system property so that it can
+ * be set on the command line of any component, e.g. {@code java -Dsim.codec=java sim.conductor.Conductor 30121}.
+ */
+public final class Config {
+
+    private Config() {}
+
+    /**
+     * @return how much every component logs ({@code sim.logLevel}: "trace", "info", "warn" or "off"). Defaults to "info",
+     * which leaves out the lines printed for every single task, unless {@code sim.trace} is set to true.
+     */
+    public static LOG_LEVEL logLevel() {
+        String level = System.getProperty("sim.logLevel");
+        if (level != null)
+            return LOG_LEVEL.valueOf(level.toUpperCase());
+
+        return Boolean.getBoolean("sim.trace") ? LOG_LEVEL.TRACE : LOG_LEVEL.INFO;
+    }
+
+    /**
+     * @return how many lines may wait to be printed before further lines are dropped ({@code sim.logBuffer}, default
+     * 8192)
+     */
+    public static int logBuffer() {
+        return Integer.getInteger("sim.logBuffer", 8192);
+    }
+
+    /**
+     * @return the share of tasks of type A among the random tasks a Client sends ({@code sim.ratioA}, between 0 and 1,
+     * default 0.5)
+     */
+    public static double ratioA() {
+        return Double.parseDouble(System.getProperty("sim.ratioA", "0.5"));
+    }
+
+    /**
+     * @return the file a Client run from the command line reads its tasks from, one type per line ({@code sim.taskFile},
+     * by default none, in which case it sends random tasks)
+     */
+    public static String taskFile() {
+        return System.getProperty("sim.taskFile");
+    }
+
+    /**
+     * @return how many tasks per second a Client issues in open-loop mode ({@code sim.rate}, default 0, which makes
+     * Clients closed-loop instead)
+     */
+    public static double rate() {
+        return Double.parseDouble(System.getProperty("sim.rate", "0"));
+    }
+
+    /**
+     * @return the name of the arrival process of open-loop Clients ({@code sim.arrivals}, "constant", "poisson"
+     * (default) or "bursty")
+     */
+    public static String arrivals() {
+        return System.getProperty("sim.arrivals", "poisson");
+    }
+
+    /**
+     * @return how many tasks arrive at once with bursty arrivals ({@code sim.burstSize}, default 50)
+     */
+    public static int burstSize() {
+        return Integer.getInteger("sim.burstSize", 50);
+    }
+
+    /**
+     * @return the name of the wire codec every connection should use ({@code sim.codec}, default "binary")
+     */
+    public static String codec() {
+        return System.getProperty("sim.codec", "binary");
+    }
+
+    /**
+     * @return how {@link sim.Main} connects the components it starts ({@code sim.transport}, "tcp" (default) or "memory")
+     */
+    public static TRANSPORT transport() {
+        return TRANSPORT.valueOf(System.getProperty("sim.transport", "tcp").toUpperCase());
+    }
+
+    /**
+     * @return how many messages may be on their way in each direction of an in-memory connection before their writer has
+     * to wait ({@code sim.channelCapacity}, default 1024)
+     */
+    public static int channelCapacity() {
+        return Integer.getInteger("sim.channelCapacity", 1024);
+    }
+
+    /**
+     * @return how the Conductor serves connected components ({@code sim.io}, "blocking" (default) or "nio")
+     */
+    public static IO_MODE ioMode() {
+        return IO_MODE.valueOf(System.getProperty("sim.io", "blocking").toUpperCase());
+    }
+
+    /**
+     * @return the amount of event loops the Conductor runs in non-blocking mode ({@code sim.eventLoops}, defaults to the
+     * amount of available processors, at most 4)
+     */
+    public static int eventLoops() {
+        return Integer.getInteger("sim.eventLoops", Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @return the kind of threads that run component loops ({@code sim.threads}, "platform" (default) or "virtual")
+     */
+    public static THREAD_MODE threadMode() {
+        return THREAD_MODE.valueOf(System.getProperty("sim.threads", "platform").toUpperCase());
+    }
+
+    /**
+     * @return the name of the strategy the Conductor uses to assign tasks to workers ({@code sim.scheduler},
+     * "heuristic" (default) or "ect")
+     */
+    public static String scheduler() {
+        return System.getProperty("sim.scheduler", "heuristic");
+    }
+
+    /**
+     * @return how many tasks the Conductor holds at most across all clients, whether they are waiting, being worked on
+     * or being returned ({@code sim.maxPending}, default 1000)
+     */
+    public static int maxPending() {
+        return Integer.getInteger("sim.maxPending", 1000);
+    }
+
+    /**
+     * @return how many tasks a single client may have outstanding at the Conductor ({@code sim.clientWindow}, default 100)
+     */
+    public static int clientWindow() {
+        return Integer.getInteger("sim.clientWindow", 100);
+    }
+
+    /**
+     * @return the largest amount of tasks sent in a single batch, by clients submitting tasks and by the Conductor
+     * returning them ({@code sim.batchSize}, default 64)
+     */
+    public static int batchSize() {
+        return Math.min(Integer.getInteger("sim.batchSize", 64), TaskBatch.MAX_TASKS);
+    }
+
+    /**
+     * @return how long the Conductor waits for more completed tasks of a client before returning them as a batch, over
+     * blocking connections
+     * ({@code sim.lingerMillis}, default 2)
+     */
+    public static long lingerMillis() {
+        return Long.getLong("sim.lingerMillis", 2);
+    }
+
+    /**
+     * @return up to how many waiting tasks of one type the Conductor sends to a worker of that type as a single work unit
+     * ({@code sim.unitSize}, default 1, which sends every task on its own)
+     */
+    public static int unitSize() {
+        return Math.min(Integer.getInteger("sim.unitSize", 1), TaskBatch.MAX_TASKS);
+    }
+
+    /**
+     * @return how long a work unit should take; the amount of tasks per unit adapts to the observed task duration
+     * ({@code sim.unitTargetMillis}, default 50)
+     */
+    public static long unitTargetMillis() {
+        return Long.getLong("sim.unitTargetMillis", 50);
+    }
+
+    /**
+     * @return how long past its expected completion the Conductor waits for a work unit before it gives up on the worker
+     * and dispatches the unit's tasks again ({@code sim.leaseMillis}, default 30000). 0 never gives up on a worker that
+     * is still connected.
+     */
+    public static long leaseMillis() {
+        return Long.getLong("sim.leaseMillis", 30000);
+    }
+
+    /**
+     * @return the percentile of how long tasks of a type take on workers of that type, between 0 and 100, beyond which
+     * the Conductor launches a speculative copy of a task on an idle worker ({@code sim.hedgePercentile}, default 0,
+     * which never does)
+     */
+    public static double hedgePercentile() {
+        return Double.parseDouble(System.getProperty("sim.hedgePercentile", "0"));
+    }
+
+    /**
+     * @return the directory the Conductor keeps its write-ahead log of task state in ({@code sim.walDir}), or
+     * {@code null} if it keeps no log (default). A Conductor restarted on the same directory recovers the tasks that
+     * were accepted and not completed yet.
+     */
+    public static Path walDir() {
+        String dir = System.getProperty("sim.walDir");
+        return dir == null || dir.isBlank() ? null : Path.of(dir);
+    }
+
+    /**
+     * @return how large each segment of the write-ahead log is ({@code sim.walSegmentBytes}, default 64 MiB)
+     */
+    public static int walSegmentBytes() {
+        return Integer.getInteger("sim.walSegmentBytes", 64 << 20);
+    }
+
+    /**
+     * @return how often the write-ahead log is forced to disk; every record appended in the meantime is committed at
+     * once ({@code sim.walSyncMillis}, default 10)
+     */
+    public static long walSyncMillis() {
+        return Long.getLong("sim.walSyncMillis", 10);
+    }
+
+    /**
+     * @return how long a durable Conductor holds the tasks it recovered for a client that has not reattached yet, before
+     * it gives up on them ({@code sim.walReattachMillis}, default 300000). 0 holds them for as long as it runs.
+     */
+    public static long walReattachMillis() {
+        return Long.getLong("sim.walReattachMillis", 300_000);
+    }
+
+    /**
+     * @return how long Clients and Workers wait before they try to reconnect to a Conductor they lost
+     * ({@code sim.reconnectMillis}, default 0, which never reconnects)
+     */
+    public static long reconnectMillis() {
+        return Long.getLong("sim.reconnectMillis", 0);
+    }
+
+    /**
+     * @return how many tasks a Worker executes concurrently ({@code sim.slots}, default 1)
+     */
+    public static int slots() {
+        return Integer.getInteger("sim.slots", 1);
+    }
+
+    /**
+     * @return how many tasks a Worker keeps buffered beyond the ones it is executing ({@code sim.prefetch}, default 0).
+     * Any value above 0 makes Workers pull their tasks from the Conductor instead of having them pushed.
+     */
+    public static int prefetch() {
+        return Integer.getInteger("sim.prefetch", 0);
+    }
+
+    /**
+     * @return how long a Worker takes to complete a task of its own type ({@code sim.sameTypeMillis}, default 2000)
+     */
+    public static long sameTypeMillis() {
+        return Long.getLong("sim.sameTypeMillis", 2000);
+    }
+
+    /**
+     * @return how long a Worker takes to complete a task of the other type ({@code sim.crossTypeMillis}, default 10000)
+     */
+    public static long crossTypeMillis() {
+        return Long.getLong("sim.crossTypeMillis", 10000);
+    }
+
+    /**
+     * @return the one-way delay of every message in a discrete-event simulation ({@code sim.latencyMicros}, default 100)
+     */
+    public static long latencyMicros() {
+        return Long.getLong("sim.latencyMicros", 100);
+    }
+
+    /**
+     * @return the seed of a discrete-event simulation's random choices ({@code sim.seed}, default 1). The same seed and
+     * options replay the same simulation.
+     */
+    public static long seed() {
+        return Long.getLong("sim.seed", 1);
+    }
+
+    /**
+     * @param taskType the type of the task to perform
+     * @param workerType the type of the worker performing it
+     * @return how long the given worker takes to complete the given task
+     */
+    public static long taskMillis(TASK_TYPE taskType, TASK_TYPE workerType) {
+        return taskType == workerType ? sameTypeMillis() : crossTypeMillis();
+    }
+}
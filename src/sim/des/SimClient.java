@@ -0,0 +1,146 @@
+package sim.des;
+
+import sim.client.Client;
+import sim.comms.wire.Credit;
+import sim.comms.wire.Handshake;
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageWriter;
+import sim.comms.wire.TaskBatch;
+import sim.component.ComponentID;
+import sim.config.Config;
+import sim.task.Task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static sim.component.COMPONENT_TYPE.CLIENT;
+import static sim.task.TASK_TYPE.A;
+import static sim.task.TASK_TYPE.B;
+
+/**
+ * A simulated {@link Client}. Like a real Client it sends tasks of a random type, in batches of up to
+ * {@link Config#batchSize()}, whenever it holds {@link Credit}s, and says goodbye once every task has come back. It also
+ * records how long each task took, on the virtual clock, from being sent to having come back.
+ */
+public class SimClient {
+
+    private final EventQueue events;
+    private final SimConnection connection;
+    private final MessageWriter out;
+    private final ComponentID componentID;
+    private final Random random;
+    private final int taskAmt;
+    private final int batchSize = Config.batchSize();
+    private final long[] sentAt;
+    private final long[] latencies;
+    private int credits;
+    private int sent;
+    private int completed;
+    private long finishedAt = -1;
+
+    /**
+     * @param events the queue of the simulation this client is part of
+     * @param connection the client's end of its link to the conductor
+     * @param refID the client's reference ID
+     * @param taskAmt how many tasks the client should send
+     * @param random the source of the client's task types
+     */
+    public SimClient(EventQueue events, SimConnection connection, int refID, int taskAmt, Random random) {
+        this.events = events;
+        this.connection = connection;
+        this.out = connection.writer();
+        this.componentID = new ComponentID(CLIENT, refID);
+        this.taskAmt = taskAmt;
+        this.random = random;
+        this.sentAt = new long[taskAmt];
+        this.latencies = new long[taskAmt];
+    }
+
+    /**
+     * Introduces the client to the conductor. Tasks are sent as soon as the first credits arrive.
+     */
+    public void begin() {
+        connection.bind(this::onMessage, () -> {});
+        send(Handshake.client(componentID));
+    }
+
+    private void onMessage(Message message) {
+        if (message instanceof Credit credit) {
+            credits += credit.amount();
+            sendTasks();
+        }
+
+        else if (message instanceof TaskBatch batch) {
+            for (Task task : batch.tasks())
+                complete(task);
+        }
+
+        else complete((Task) message);
+    }
+
+    /**
+     * Sends as many tasks as the held credits allow.
+     */
+    private void sendTasks() {
+        while (credits > 0 && sent < taskAmt) {
+            int amount = Math.min(Math.min(credits, batchSize), taskAmt - sent);
+            List<Task> batch = new ArrayList<>(amount);
+            for (int i = 0; i < amount; i++) {
+                batch.add(new Task(componentID.refID(), sent, random.nextBoolean() ? A : B));
+                sentAt[sent++] = events.now();
+            }
+
+            credits -= amount;
+            send(TaskBatch.of(batch));
+        }
+    }
+
+    private void complete(Task task) {
+        latencies[completed++] = events.now() - sentAt[task.taskID()];
+        if (completed < taskAmt)
+            return;
+
+        finishedAt = events.now();
+        send(new Task(componentID.refID(), -1, A));
+        connection.close();
+    }
+
+    private void send(Message message) {
+        try {
+            out.send(message);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return how many of this client's tasks have come back
+     */
+    public int getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return how many tasks this client sends in total
+     */
+    public int getTaskAmt() {
+        return taskAmt;
+    }
+
+    /**
+     * @return the virtual time at which the client's last task came back, or -1 if it has not yet
+     */
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * @return the latency of every task that has come back so far, in nanoseconds, in the order they came back
+     */
+    public long[] getLatencies() {
+        return Arrays.copyOf(latencies, completed);
+    }
+}
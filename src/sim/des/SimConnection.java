@@ -0,0 +1,112 @@
+package sim.des;
+
+import sim.comms.EventDrivenConnection;
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageWriter;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * One end of a simulated network link. Messages written to it are handed, as they are, to the other end after the
+ * link's latency has passed on the {@link EventQueue}'s virtual clock. Nothing is encoded, so a simulation pays for
+ * the network delay it models but not for serialization.
+ * <p>
+ * Closing one end lets the other end know after the same latency. Messages that arrive at a closed end are dropped,
+ * like bytes arriving at a closed socket.
+ */
+public class SimConnection implements EventDrivenConnection {
+
+    private final EventQueue events;
+    private final long latencyNanos;
+    private final MessageWriter writer = new LinkWriter();
+    private SimConnection peer;
+    private Consumer<Message> onMessage = message -> {};
+    private Runnable onClose = () -> {};
+    private boolean closed;
+
+    private SimConnection(EventQueue events, long latencyNanos) {
+        this.events = events;
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * Creates both ends of a link.
+     * @param events the queue that delivers messages
+     * @param latencyNanos the one-way delay of every message, in nanoseconds
+     * @return one end of the link; the other end is available through {@link #peer()}
+     */
+    public static SimConnection pair(EventQueue events, long latencyNanos) {
+        SimConnection one = new SimConnection(events, latencyNanos);
+        SimConnection other = new SimConnection(events, latencyNanos);
+        one.peer = other;
+        other.peer = one;
+        return one;
+    }
+
+    /**
+     * @return the other end of this link
+     */
+    public SimConnection peer() {
+        return peer;
+    }
+
+    /**
+     * Starts, or redirects, the delivery of incoming messages. Binding again replaces the previous callbacks, which lets
+     * an acceptor hand a connection over to a handler once the handshake has been read.
+     */
+    @Override
+    public void bind(Consumer<Message> onMessage, Runnable onClose) {
+        this.onMessage = onMessage;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public MessageWriter writer() {
+        return writer;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        events.schedule(latencyNanos, peer::disconnect);
+    }
+
+    private void deliver(Message message) {
+        if (!closed)
+            onMessage.accept(message);
+    }
+
+    private void disconnect() {
+        if (closed)
+            return;
+
+        closed = true;
+        onClose.run();
+    }
+
+    /**
+     * Schedules every written message for delivery right away; there is nothing to flush.
+     */
+    private class LinkWriter implements MessageWriter {
+
+        @Override
+        public void write(Message message) throws IOException {
+            if (closed)
+                throw new IOException("Connection closed");
+
+            events.schedule(latencyNanos, () -> peer.deliver(message));
+        }
+
+        @Override
+        public void flush() {}
+    }
+}
@@ -0,0 +1,143 @@
+package sim.des;
+
+import sim.comms.wire.Handshake;
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageWriter;
+import sim.comms.wire.TaskBatch;
+import sim.comms.wire.WorkRequest;
+import sim.component.ComponentID;
+import sim.config.Config;
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+import sim.worker.Worker;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
+import static sim.component.COMPONENT_TYPE.WORKER;
+
+/**
+ * A simulated {@link Worker}. It speaks the same protocol as a real Worker, but instead of sleeping through a task it
+ * schedules the task's completion {@link Config#taskMillis(TASK_TYPE, TASK_TYPE)} ahead on the virtual clock. Each of
+ * its slots performs one work unit at a time, one task after the other.
+ */
+public class SimWorker {
+
+    private final EventQueue events;
+    private final SimConnection connection;
+    private final MessageWriter out;
+    private final ComponentID componentID;
+    private final TASK_TYPE workerType;
+    private final int slots;
+    private final int prefetch;
+    private final Queue<List<Task>> localTasks = new ArrayDeque<>();
+    private int busySlots;
+    private long busyNanos;
+    private long completedTasks;
+
+    /**
+     * @param events the queue of the simulation this worker is part of
+     * @param connection the worker's end of its link to the conductor
+     * @param refID the worker's reference ID
+     * @param workerType the type of Worker
+     * @param slots how many work units to perform concurrently
+     * @param prefetch how many tasks to keep buffered beyond the ones being performed; 0 to have tasks pushed instead
+     */
+    public SimWorker(EventQueue events, SimConnection connection, int refID, TASK_TYPE workerType, int slots, int prefetch) {
+        if (slots < 1)
+            throw new IllegalArgumentException("A Worker needs at least one slot");
+
+        this.events = events;
+        this.connection = connection;
+        this.out = connection.writer();
+        this.componentID = new ComponentID(WORKER, refID);
+        this.workerType = workerType;
+        this.slots = slots;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Introduces the worker to the conductor and, in pull mode, asks for its first tasks.
+     */
+    public void begin() {
+        connection.bind(this::onMessage, () -> {});
+        send(Handshake.worker(componentID, workerType, slots, prefetch));
+        if (prefetch > 0)
+            send(new WorkRequest(slots + prefetch));
+    }
+
+    private void onMessage(Message message) {
+        if (message instanceof TaskBatch unit)
+            localTasks.add(unit.tasks());
+
+        else localTasks.add(List.of((Task) message));
+
+        startUnits();
+    }
+
+    /**
+     * Starts a buffered work unit on every free slot.
+     */
+    private void startUnits() {
+        while (busySlots < slots && !localTasks.isEmpty()) {
+            List<Task> unit = localTasks.poll();
+            long nanos = 0;
+            for (Task task : unit)
+                nanos += Config.taskMillis(task.type(), workerType) * 1_000_000;
+
+            busySlots++;
+            busyNanos += nanos;
+            events.schedule(nanos, () -> complete(unit));
+        }
+    }
+
+    private void complete(List<Task> unit) {
+        busySlots--;
+        completedTasks += unit.size();
+        if (!connection.isClosed()) {
+            send(TaskBatch.of(unit));
+            if (prefetch > 0)
+                send(new WorkRequest(1));
+        }
+
+        startUnits();
+    }
+
+    private void send(Message message) {
+        try {
+            out.send(message);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the type of Worker
+     */
+    public TASK_TYPE getWorkerType() {
+        return workerType;
+    }
+
+    /**
+     * @return how many work units this worker performs concurrently
+     */
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * @return the total virtual time this worker's slots have spent performing tasks, in nanoseconds
+     */
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    /**
+     * @return how many tasks this worker has completed
+     */
+    public long getCompletedTasks() {
+        return completedTasks;
+    }
+}
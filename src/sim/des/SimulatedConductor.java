@@ -0,0 +1,125 @@
+package sim.des;
+
+import sim.comms.wire.Handshake;
+import sim.comms.wire.Message;
+import sim.conductor.ClientRegistry;
+import sim.conductor.Conductor;
+import sim.conductor.CreditController;
+import sim.conductor.LeaseTable;
+import sim.conductor.WorkerTracker;
+import sim.conductor.comms.ClientHandler;
+import sim.conductor.comms.WorkerHandler;
+import sim.conductor.scheduling.Dispatcher;
+import sim.conductor.scheduling.SchedulingStrategy;
+import sim.config.Config;
+import sim.log.Log;
+import sim.metrics.TaskTable;
+
+import java.util.concurrent.TimeUnit;
+
+import static sim.component.COMPONENT_TYPE.CLIENT;
+
+/**
+ * The {@link Conductor}'s scheduling core, assembled without any threads or sockets: the same {@link WorkerTracker},
+ * {@link Dispatcher}, {@link CreditController}, {@link ClientRegistry}, {@link ClientHandler}s and {@link WorkerHandler}s, driven by the
+ * {@link EventQueue} of a simulation. Handlers sit on top of {@link SimConnection}s and measure time on the virtual
+ * clock.
+ * <p>
+ * Where the Conductor runs the Dispatcher on a thread of its own, the simulation calls {@link #step()} after every
+ * event, and checks the leases of the workers, and hedges stragglers, on the virtual clock. Completed tasks are routed back to their
+ * clients as soon as a WorkerHandler receives them, just like in the Conductor.
+ */
+public class SimulatedConductor {
+
+    private final EventQueue events;
+    private final WorkerTracker workerTracker = new WorkerTracker();
+    private final CreditController creditController = new CreditController(Config.maxPending(), Config.clientWindow());
+    private final ClientRegistry clientRegistry = new ClientRegistry(creditController);
+    private final Dispatcher dispatcher;
+    private final TaskTable taskTable;
+    private final LeaseTable leaseTable;
+    private final long leasePeriodNanos;
+    private boolean leaseCheckScheduled;
+
+    /**
+     * @param events the queue of the simulation this conductor is part of
+     * @param strategy the strategy that decides where each task goes
+     */
+    public SimulatedConductor(EventQueue events, SchedulingStrategy strategy) {
+        this.events = events;
+        this.dispatcher = new Dispatcher(strategy, workerTracker);
+        this.taskTable = new TaskTable(events::now);
+        this.leaseTable = new LeaseTable(dispatcher, events::now, Config.leaseMillis(), taskTable.histograms(),
+                Config.hedgePercentile());
+        this.leasePeriodNanos = TimeUnit.MILLISECONDS.toNanos(leaseTable.checkPeriodMillis());
+        workerTracker.register(dispatcher);
+    }
+
+    /**
+     * Accepts a new link. The component on the other end is expected to send its {@link Handshake} first.
+     * @param connection the conductor's end of the link
+     */
+    public void accept(SimConnection connection) {
+        connection.bind(greeting -> establish(greeting, connection), () -> {});
+    }
+
+    private void establish(Message greeting, SimConnection connection) {
+        if (!(greeting instanceof Handshake handshake)) {
+            Log.warn("SIMULATION: Expected a handshake, received %s", greeting);
+            connection.close();
+            return;
+        }
+
+        if (handshake.componentID().component_type() == CLIENT) {
+            ClientHandler clientHandler = new ClientHandler(handshake.componentID(), connection);
+            clientHandler.setDispatcher(dispatcher);
+            clientHandler.setClientRegistry(clientRegistry);
+            clientHandler.setTaskTable(taskTable);
+            clientHandler.start();
+            clientRegistry.register(clientHandler);
+        }
+
+        else {
+            WorkerHandler workerHandler = new WorkerHandler(handshake, connection);
+            workerHandler.setClock(events::now);
+            workerHandler.setClientRegistry(clientRegistry);
+            workerHandler.setLeaseTable(leaseTable);
+            workerHandler.setTaskTable(taskTable);
+            workerTracker.add(workerHandler);
+            workerHandler.register(workerTracker);
+            workerHandler.start();
+        }
+    }
+
+    /**
+     * @return the table in which the lifecycle of every task is recorded, on the virtual clock
+     */
+    public TaskTable getTaskTable() {
+        return taskTable;
+    }
+
+    /**
+     * @return the table of tasks leased to workers
+     */
+    public LeaseTable getLeaseTable() {
+        return leaseTable;
+    }
+
+    /**
+     * Dispatches whatever has become possible since the last event. While tasks are leased to workers, a check for
+     * overdue workers and stragglers is scheduled every {@link LeaseTable#checkPeriodMillis()} of virtual time.
+     */
+    public void step() {
+        if (leasePeriodNanos > 0 && !leaseCheckScheduled && leaseTable.size() > 0) {
+            leaseCheckScheduled = true;
+            events.schedule(leasePeriodNanos, this::checkLeases);
+        }
+
+        dispatcher.dispatchPending();
+    }
+
+    private void checkLeases() {
+        leaseCheckScheduled = false;
+        leaseTable.check();
+    }
+}
@@ -0,0 +1,181 @@
+package sim.des;
+
+import sim.conductor.Conductor;
+import sim.conductor.LeaseTable;
+import sim.conductor.scheduling.SchedulingStrategies;
+import sim.conductor.scheduling.SchedulingStrategy;
+import sim.config.Config;
+import sim.log.Log;
+import sim.task.TASK_TYPE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static sim.task.TASK_TYPE.A;
+import static sim.task.TASK_TYPE.B;
+
+/**
+ * Runs a whole distributed system (clients, workers, the network between them and a {@link Conductor}'s scheduling
+ * core) as a discrete-event simulation on a virtual clock, in a single thread. Task durations come from
+ * {@link Config#taskMillis(TASK_TYPE, TASK_TYPE)} and every message takes {@link Config#latencyMicros()} to arrive, but
+ * none of that time is actually waited for, so millions of tasks go through in seconds. All other options, such as
+ * {@link Config#scheduler()}, {@link Config#slots()} or {@link Config#unitSize()}, apply just like in a real run, which
+ * makes the simulation a way to compare policies and plan the size of a cluster offline.
+ * <p>
+ * Every random choice is drawn from {@link Config#seed()}, so the same options always replay the same run. Per-task
+ * output is off unless {@code sim.trace} is set.
+ * <p>
+ * Usage: {@code java sim.des.Simulation [clients] [tasks per client] [A workers] [B workers]}
+ */
+public class Simulation {
+
+    private final EventQueue events = new EventQueue();
+    private final SimulatedConductor conductor;
+    private final long latencyNanos;
+    private final Random random;
+    private final List<SimClient> clients = new ArrayList<>();
+    private final List<SimWorker> workers = new ArrayList<>();
+
+    /**
+     * @param strategy the strategy the conductor uses to assign tasks to workers
+     * @param latencyNanos the one-way delay of every message, in nanoseconds
+     * @param seed the seed of every random choice in the simulation
+     */
+    public Simulation(SchedulingStrategy strategy, long latencyNanos, long seed) {
+        this.conductor = new SimulatedConductor(events, strategy);
+        this.latencyNanos = latencyNanos;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Connects a new client to the conductor.
+     * @param taskAmt how many tasks the client sends
+     */
+    public void addClient(int taskAmt) {
+        SimConnection connection = SimConnection.pair(events, latencyNanos);
+        conductor.accept(connection.peer());
+        SimClient client = new SimClient(events, connection, clients.size() + 1, taskAmt, new Random(random.nextLong()));
+        clients.add(client);
+        client.begin();
+    }
+
+    /**
+     * Connects a new worker to the conductor.
+     * @param workerType the type of Worker
+     * @param slots how many work units the worker performs concurrently
+     * @param prefetch how many tasks it keeps buffered beyond the ones being performed; 0 to have tasks pushed instead
+     */
+    public void addWorker(TASK_TYPE workerType, int slots, int prefetch) {
+        SimConnection connection = SimConnection.pair(events, latencyNanos);
+        conductor.accept(connection.peer());
+        SimWorker worker = new SimWorker(events, connection, workers.size() + 1, workerType, slots, prefetch);
+        workers.add(worker);
+        worker.begin();
+    }
+
+    /**
+     * Runs events until none are left, which happens once every client is done or nothing can make progress anymore.
+     */
+    public void run() {
+        while (events.step())
+            conductor.step();
+    }
+
+    /**
+     * Prints the virtual makespan, throughput, latency percentiles, worker utilization and the time tasks spent in each
+     * stage at the conductor.
+     * @param wallNanos how long the run took in wall time
+     */
+    public void report(long wallNanos) {
+        long total = 0, completed = 0, makespan = 0;
+        for (SimClient client : clients) {
+            total += client.getTaskAmt();
+            completed += client.getCompleted();
+            makespan = Math.max(makespan, client.getFinishedAt());
+        }
+
+        if (completed < total) {
+            System.out.printf("SIMULATION: Stalled after %d of %d tasks at %.3f s\n", completed, total, events.now() / 1e9);
+            makespan = events.now();
+        }
+
+        long[] latencies = new long[(int) completed];
+        int at = 0;
+        for (SimClient client : clients) {
+            long[] clientLatencies = client.getLatencies();
+            System.arraycopy(clientLatencies, 0, latencies, at, clientLatencies.length);
+            at += clientLatencies.length;
+        }
+
+        Arrays.sort(latencies);
+        double seconds = makespan / 1e9;
+        System.out.printf("SIMULATION: %d tasks completed in %.3f s of virtual time, %.1f tasks/s\n",
+                completed, seconds, completed / Math.max(seconds, 1e-9));
+
+        if (latencies.length > 0) {
+            System.out.printf("SIMULATION: Latency in ms: mean %.1f, p50 %.1f, p99 %.1f, max %.1f\n",
+                    Arrays.stream(latencies).average().orElse(0) / 1e6, percentile(latencies, 0.50) / 1e6,
+                    percentile(latencies, 0.99) / 1e6, latencies[latencies.length - 1] / 1e6);
+        }
+
+        for (TASK_TYPE type : TASK_TYPE.values()) {
+            long busy = 0, capacity = 0;
+            for (SimWorker worker : workers) {
+                if (worker.getWorkerType() == type) {
+                    busy += worker.getBusyNanos();
+                    capacity += worker.getSlots() * makespan;
+                }
+            }
+
+            if (capacity > 0)
+                System.out.printf("SIMULATION: Workers of type %s were busy %.1f%% of the time\n", type, 100.0 * busy / capacity);
+        }
+
+        LeaseTable leases = conductor.getLeaseTable();
+        if (leases.reassigned() > 0 || leases.duplicates() > 0)
+            System.out.printf("SIMULATION: %d tasks dispatched again after losing their worker, %d duplicate completions suppressed\n",
+                    leases.reassigned(), leases.duplicates());
+
+        if (leases.hedged() > 0)
+            System.out.printf("SIMULATION: %d straggling tasks hedged, %d copies completed first\n",
+                    leases.hedged(), leases.hedgesWon());
+
+        System.out.println("SIMULATION: Time per lifecycle stage in microseconds:");
+        System.out.print(conductor.getTaskTable().histograms().report());
+        System.out.printf("SIMULATION: %d events in %d ms of wall time\n",
+                events.processed(), TimeUnit.NANOSECONDS.toMillis(wallNanos));
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    public static void main(String[] args) {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int tasksPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int workersA = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int workersB = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+        SchedulingStrategy strategy = SchedulingStrategies.defaultStrategy();
+        System.out.printf("SIMULATION: %d clients x %d tasks, %d A workers, %d B workers, %d slots each, scheduler %s\n",
+                clientCount, tasksPerClient, workersA, workersB, Config.slots(), strategy.name());
+
+        Simulation simulation = new Simulation(strategy, TimeUnit.MICROSECONDS.toNanos(Config.latencyMicros()), Config.seed());
+        for (int i = 0; i < workersA; i++)
+            simulation.addWorker(A, Config.slots(), Config.prefetch());
+
+        for (int i = 0; i < workersB; i++)
+            simulation.addWorker(B, Config.slots(), Config.prefetch());
+
+        for (int i = 0; i < clientCount; i++)
+            simulation.addClient(tasksPerClient);
+
+        long start = System.nanoTime();
+        simulation.run();
+        Log.flush();
+        simulation.report(System.nanoTime() - start);
+    }
+}
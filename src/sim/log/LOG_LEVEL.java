@@ -0,0 +1,28 @@
+package sim.log;
+
+/**
+ * How much the components of the simulation log, from the most to the least detailed. Every level includes the ones
+ * below it.
+ */
+public enum LOG_LEVEL {
+
+    /**
+     * Every task sent, received, assigned and performed.
+     */
+    TRACE,
+
+    /**
+     * Connections, disconnections and terminations.
+     */
+    INFO,
+
+    /**
+     * Messages that could not be delivered and other things that went wrong.
+     */
+    WARN,
+
+    /**
+     * Nothing at all.
+     */
+    OFF
+}
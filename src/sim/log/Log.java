@@ -0,0 +1,155 @@
+package sim.log;
+
+import sim.config.Config;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The log of every component. Logging a line only checks its level and adds its format and arguments to a lock-free
+ * {@link LogBuffer}; a background thread formats the lines and prints them in batches. The threads serving clients
+ * and workers therefore never take the lock of {@link System#out}, never format a string and never wait for the
+ * terminal.
+ * <p>
+ * The level is read once from {@link Config#logLevel()}, so that the JIT compiler can remove disabled calls altogether.
+ * Arguments are formatted after the call returns, so only immutable values such as tasks, IDs and numbers should be
+ * passed. Lines are dropped rather than delaying the caller when the buffer is full, and the amount dropped is logged.
+ * Whatever is still buffered is printed when the JVM shuts down.
+ */
+public final class Log {
+
+    private static final LOG_LEVEL LEVEL = Config.logLevel();
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int MAX_BATCH_CHARS = 64 * 1024;
+
+    private static final LogBuffer BUFFER = new LogBuffer(Config.logBuffer());
+    private static final PrintStream OUT = System.out;
+    private static final Thread WRITER = startWriter();
+    private static volatile long printed;
+
+    private Log() {}
+
+    /**
+     * @param level a level
+     * @return whether lines of the given level are logged
+     */
+    public static boolean enabled(LOG_LEVEL level) {
+        return level.compareTo(LEVEL) >= 0 && level != LOG_LEVEL.OFF;
+    }
+
+    /**
+     * Logs a line at {@link LOG_LEVEL#TRACE}. The fixed-arity variants keep disabled calls free of varargs arrays.
+     * @param message the line
+     */
+    public static void trace(String message) {
+        if (enabled(LOG_LEVEL.TRACE))
+            BUFFER.offer(new LogEvent(LOG_LEVEL.TRACE, message, NO_ARGS));
+    }
+
+    /**
+     * @see #trace(String)
+     */
+    public static void trace(String format, Object arg) {
+        if (enabled(LOG_LEVEL.TRACE))
+            BUFFER.offer(new LogEvent(LOG_LEVEL.TRACE, format, new Object[]{arg}));
+    }
+
+    /**
+     * @see #trace(String)
+     */
+    public static void trace(String format, Object arg1, Object arg2) {
+        if (enabled(LOG_LEVEL.TRACE))
+            BUFFER.offer(new LogEvent(LOG_LEVEL.TRACE, format, new Object[]{arg1, arg2}));
+    }
+
+    /**
+     * @see #trace(String)
+     */
+    public static void trace(String format, Object arg1, Object arg2, Object arg3) {
+        if (enabled(LOG_LEVEL.TRACE))
+            BUFFER.offer(new LogEvent(LOG_LEVEL.TRACE, format, new Object[]{arg1, arg2, arg3}));
+    }
+
+    /**
+     * @see #trace(String)
+     */
+    public static void trace(String format, Object... args) {
+        log(LOG_LEVEL.TRACE, format, args);
+    }
+
+    /**
+     * Logs a line at {@link LOG_LEVEL#INFO}.
+     * @param format the format of the line, as understood by {@link String#format(String, Object...)}
+     * @param args the arguments referenced by the format
+     */
+    public static void info(String format, Object... args) {
+        log(LOG_LEVEL.INFO, format, args);
+    }
+
+    /**
+     * Logs a line at {@link LOG_LEVEL#WARN}.
+     * @param format the format of the line, as understood by {@link String#format(String, Object...)}
+     * @param args the arguments referenced by the format
+     */
+    public static void warn(String format, Object... args) {
+        log(LOG_LEVEL.WARN, format, args);
+    }
+
+    private static void log(LOG_LEVEL level, String format, Object[] args) {
+        if (enabled(level))
+            BUFFER.offer(new LogEvent(level, format, args));
+    }
+
+    /**
+     * Waits until every line logged before this call has been printed.
+     */
+    public static void flush() {
+        long target = BUFFER.added();
+        while (printed < target && WRITER.isAlive()) {
+            LockSupport.unpark(WRITER);
+            LockSupport.parkNanos(IDLE_PARK_NANOS / 10);
+        }
+    }
+
+    private static Thread startWriter() {
+        Thread writer = new Thread(Log::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+        return writer;
+    }
+
+    /**
+     * Drains the buffer into batches of formatted lines and prints each batch at once. When the buffer is empty, the
+     * writer sleeps briefly instead of being woken up by every caller, so that logging never costs a system call.
+     */
+    private static void write() {
+        StringBuilder batch = new StringBuilder();
+        while (true) {
+            LogEvent event;
+            while ((event = BUFFER.poll()) != null) {
+                batch.append(event.render()).append('\n');
+                if (batch.length() >= MAX_BATCH_CHARS)
+                    print(batch);
+            }
+
+            long dropped = BUFFER.takeDropped();
+            if (dropped > 0)
+                batch.append("LOG: Dropped ").append(dropped).append(" lines, the buffer was full\n");
+
+            if (batch.length() > 0)
+                print(batch);
+
+            else LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private static void print(StringBuilder batch) {
+        OUT.print(batch);
+        OUT.flush();
+        batch.setLength(0);
+        printed = BUFFER.removed();
+    }
+}
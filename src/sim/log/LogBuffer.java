@@ -0,0 +1,63 @@
+package sim.log;
+
+import sim.concurrent.MpscRing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free queue of {@link LogEvent}s that any number of threads add to and the {@link Log}'s writer thread
+ * drains, backed by an {@link MpscRing}.
+ * <p>
+ * Unlike an in-memory connection, a full buffer never makes a writer wait: the event is dropped and counted instead, so
+ * that logging can not slow down the threads doing the actual work.
+ */
+class LogBuffer {
+
+    private final MpscRing<LogEvent> ring;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity how many events the buffer holds at most, rounded up to the next power of two
+     */
+    LogBuffer(int capacity) {
+        this.ring = new MpscRing<>(Math.max(1, capacity));
+    }
+
+    /**
+     * Adds an event, or drops it if the buffer is full.
+     * @param event the event to add
+     */
+    void offer(LogEvent event) {
+        if (!ring.offer(event))
+            dropped.incrementAndGet();
+    }
+
+    /**
+     * Removes the oldest event. Must only be called by the reading thread.
+     * @return the oldest event, or null if the buffer is empty
+     */
+    LogEvent poll() {
+        return ring.poll();
+    }
+
+    /**
+     * @return how many events have been added so far
+     */
+    long added() {
+        return ring.added();
+    }
+
+    /**
+     * @return how many events have been removed so far. Must only be called by the reading thread.
+     */
+    long removed() {
+        return ring.removed();
+    }
+
+    /**
+     * @return how many events have been dropped since the last call, resetting the count
+     */
+    long takeDropped() {
+        return dropped.getAndSet(0);
+    }
+}
@@ -0,0 +1,17 @@
+package sim.log;
+
+/**
+ * A single line to be logged, kept as its format and arguments until the {@link Log}'s writer thread formats it.
+ * @param level the level the line was logged at
+ * @param format the format of the line, as understood by {@link String#format(String, Object...)}
+ * @param args the arguments referenced by the format
+ */
+record LogEvent(LOG_LEVEL level, String format, Object[] args) {
+
+    /**
+     * @return the formatted line
+     */
+    String render() {
+        return args.length == 0 ? format : String.format(format, args);
+    }
+}
@@ -0,0 +1,123 @@
+package sim.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latency histogram in the style of HdrHistogram. Values are counted in buckets whose width grows with the value:
+ * every power of two is split into {@value #SUB_BUCKETS} equal buckets, so any recorded value is reproduced within
+ * 1% no matter whether it is a microsecond or an hour. That keeps percentiles up to p99.99 meaningful at a fixed,
+ * small memory footprint.
+ * <p>
+ * Recording never allocates or takes a lock, and may happen from any number of threads at once.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * @param highestTrackableValue the largest value the histogram tells apart; larger values are counted as this one
+     */
+    public Histogram(long highestTrackableValue) {
+        if (highestTrackableValue < 1)
+            throw new IllegalArgumentException("The highest trackable value must be positive");
+
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(indexOf(highestTrackableValue) + 1);
+    }
+
+    /**
+     * The bucket of a value: the value itself below {@code 2 * SUB_BUCKETS}, and above that the top
+     * {@code SUB_BUCKET_BITS + 1} bits of the value, offset by how far they had to be shifted.
+     */
+    private static int indexOf(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the largest value that falls into the bucket with the given index
+     */
+    private static long highestValueAt(int index) {
+        if (index < 2 * SUB_BUCKETS)
+            return index;
+
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long top = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a single value. Negative values are counted as 0.
+     * @param value the value to record
+     */
+    public void record(long value) {
+        long clamped = Math.min(Math.max(0, value), highestTrackableValue);
+        counts.incrementAndGet(indexOf(clamped));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(clamped);
+        maxValue.accumulateAndGet(clamped, Math::max);
+    }
+
+    /**
+     * @return how many values have been recorded
+     */
+    public long count() {
+        return totalCount.get();
+    }
+
+    /**
+     * @return the mean of all recorded values, or 0 if there are none
+     */
+    public double mean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalValue.get() / count;
+    }
+
+    /**
+     * @return the largest recorded value
+     */
+    public long max() {
+        return maxValue.get();
+    }
+
+    /**
+     * @param percentile a percentile between 0 and 100, e.g. 99.99
+     * @return the value that the given percentage of recorded values does not exceed, within the histogram's
+     * precision, or 0 if nothing has been recorded
+     */
+    public long percentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestValueAt(i), maxValue.get());
+        }
+
+        return maxValue.get();
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded while the reset is under way may or may not be kept.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+}
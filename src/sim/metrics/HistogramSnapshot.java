@@ -0,0 +1,113 @@
+package sim.metrics;
+
+import sim.task.TASK_TYPE;
+
+/**
+ * The summary of one of the {@link LifecycleHistograms} at a point in time, in microseconds. Exposed through JMX, which
+ * is why it follows the getter conventions of a Java bean.
+ */
+public class HistogramSnapshot {
+
+    private final String stage;
+    private final String taskType;
+    private final boolean workerMatched;
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double p9999Micros;
+    private final double maxMicros;
+
+    HistogramSnapshot(LIFECYCLE_STAGE stage, TASK_TYPE taskType, boolean workerMatched, Histogram histogram) {
+        this.stage = stage.name();
+        this.taskType = taskType.name();
+        this.workerMatched = workerMatched;
+        this.count = histogram.count();
+        this.meanMicros = histogram.mean() / 1e3;
+        this.p50Micros = histogram.percentile(50) / 1e3;
+        this.p90Micros = histogram.percentile(90) / 1e3;
+        this.p99Micros = histogram.percentile(99) / 1e3;
+        this.p999Micros = histogram.percentile(99.9) / 1e3;
+        this.p9999Micros = histogram.percentile(99.99) / 1e3;
+        this.maxMicros = histogram.max() / 1e3;
+    }
+
+    /**
+     * @return the name of the {@link LIFECYCLE_STAGE}
+     */
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * @return the name of the {@link TASK_TYPE} of the tasks
+     */
+    public String getTaskType() {
+        return taskType;
+    }
+
+    /**
+     * @return true if the tasks were performed by workers of their own type
+     */
+    public boolean isWorkerMatched() {
+        return workerMatched;
+    }
+
+    /**
+     * @return how many tasks were recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean time
+     */
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    /**
+     * @return the median time
+     */
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    /**
+     * @return the 90th percentile
+     */
+    public double getP90Micros() {
+        return p90Micros;
+    }
+
+    /**
+     * @return the 99th percentile
+     */
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    /**
+     * @return the 99.9th percentile
+     */
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    /**
+     * @return the 99.99th percentile
+     */
+    public double getP9999Micros() {
+        return p9999Micros;
+    }
+
+    /**
+     * @return the longest time
+     */
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+}
@@ -0,0 +1,18 @@
+package sim.metrics;
+
+/**
+ * The stretches of time a task spends at the Conductor, between being received from its client and being returned to
+ * it. TOTAL covers all of them.
+ */
+public enum LIFECYCLE_STAGE {
+    /** From being received from the client to being assigned to a worker. */
+    QUEUE_WAIT,
+    /** From being assigned to a worker to being written to the worker's connection. */
+    DISPATCH,
+    /** From being written to the worker's connection to its completion being received, network included. */
+    EXECUTION,
+    /** From its completion being received to being written back to the client. */
+    RETURN,
+    /** From being received from the client to being written back to it. */
+    TOTAL
+}
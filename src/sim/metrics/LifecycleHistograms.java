@@ -0,0 +1,101 @@
+package sim.metrics;
+
+import sim.task.TASK_TYPE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link Histogram} for every {@link LIFECYCLE_STAGE}, broken down by the type of the task and by whether it was
+ * performed by a worker of its own type. All values are nanoseconds.
+ */
+public class LifecycleHistograms {
+
+    private static final LIFECYCLE_STAGE[] STAGES = LIFECYCLE_STAGE.values();
+    private static final TASK_TYPE[] TYPES = TASK_TYPE.values();
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private final Histogram[][][] histograms = new Histogram[STAGES.length][TYPES.length][2];
+
+    LifecycleHistograms() {
+        for (Histogram[][] byType : histograms) {
+            for (Histogram[] byMatch : byType) {
+                byMatch[0] = new Histogram(HIGHEST_TRACKABLE_NANOS);
+                byMatch[1] = new Histogram(HIGHEST_TRACKABLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Records every stage of a task that has just been returned to its client.
+     */
+    void record(TASK_TYPE taskType, TaskRecord record, long returnedAt) {
+        int type = taskType.ordinal();
+        int matched = record.workerType == taskType ? 1 : 0;
+        histograms[LIFECYCLE_STAGE.QUEUE_WAIT.ordinal()][type][matched].record(record.assignedAt - record.receivedAt);
+        histograms[LIFECYCLE_STAGE.DISPATCH.ordinal()][type][matched].record(record.sentAt - record.assignedAt);
+        histograms[LIFECYCLE_STAGE.EXECUTION.ordinal()][type][matched].record(record.completedAt - record.sentAt);
+        histograms[LIFECYCLE_STAGE.RETURN.ordinal()][type][matched].record(returnedAt - record.completedAt);
+        histograms[LIFECYCLE_STAGE.TOTAL.ordinal()][type][matched].record(returnedAt - record.receivedAt);
+    }
+
+    /**
+     * @param stage a lifecycle stage
+     * @param taskType the type of task
+     * @param workerMatched true for tasks performed by a worker of their own type, false for the others
+     * @return the histogram of the given breakdown
+     */
+    public Histogram histogram(LIFECYCLE_STAGE stage, TASK_TYPE taskType, boolean workerMatched) {
+        return histograms[stage.ordinal()][taskType.ordinal()][workerMatched ? 1 : 0];
+    }
+
+    /**
+     * @return a snapshot of every histogram that has recorded anything, ordered by stage, task type and worker match
+     */
+    public List<HistogramSnapshot> snapshots() {
+        List<HistogramSnapshot> snapshots = new ArrayList<>();
+        for (LIFECYCLE_STAGE stage : STAGES) {
+            for (TASK_TYPE type : TYPES) {
+                for (boolean matched : new boolean[] {true, false}) {
+                    Histogram histogram = histogram(stage, type, matched);
+                    if (histogram.count() > 0)
+                        snapshots.add(new HistogramSnapshot(stage, type, matched, histogram));
+                }
+            }
+        }
+
+        return snapshots;
+    }
+
+    /**
+     * @return a table of every histogram that has recorded anything, with its percentiles in microseconds
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "%-10s %-4s %-9s %10s %12s %12s %12s %12s %12s %12s %12s%n",
+                "stage", "type", "worker", "count", "mean", "p50", "p90", "p99", "p99.9", "p99.99", "max"));
+        for (HistogramSnapshot snapshot : snapshots()) {
+            report.append(String.format(Locale.ROOT,
+                    "%-10s %-4s %-9s %10d %12.1f %12.1f %12.1f %12.1f %12.1f %12.1f %12.1f%n",
+                    snapshot.getStage(), snapshot.getTaskType(), snapshot.isWorkerMatched() ? "matched" : "crossed",
+                    snapshot.getCount(), snapshot.getMeanMicros(), snapshot.getP50Micros(), snapshot.getP90Micros(),
+                    snapshot.getP99Micros(), snapshot.getP999Micros(), snapshot.getP9999Micros(), snapshot.getMaxMicros()));
+        }
+
+        return report.toString();
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        for (Histogram[][] byType : histograms) {
+            for (Histogram[] byMatch : byType) {
+                byMatch[0].reset();
+                byMatch[1].reset();
+            }
+        }
+    }
+}
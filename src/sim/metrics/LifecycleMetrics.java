@@ -0,0 +1,55 @@
+package sim.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exposes a {@link TaskTable} through JMX.
+ */
+public class LifecycleMetrics implements LifecycleMetricsMXBean {
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final TaskTable taskTable;
+
+    private LifecycleMetrics(TaskTable taskTable) {
+        this.taskTable = taskTable;
+    }
+
+    /**
+     * Registers the given table with the platform MBean server. Failing to do so only costs the JMX view, so it is
+     * reported and otherwise ignored.
+     * @param taskTable the table to expose
+     */
+    public static void register(TaskTable taskTable) {
+        try {
+            ObjectName name = new ObjectName("sim:type=Conductor,name=TaskLifecycle,id=" + NEXT_ID.getAndIncrement());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new LifecycleMetrics(taskTable), name);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public List<HistogramSnapshot> getHistograms() {
+        return taskTable.histograms().snapshots();
+    }
+
+    @Override
+    public String getReport() {
+        return taskTable.histograms().report();
+    }
+
+    @Override
+    public int getTasksInFlight() {
+        return taskTable.size();
+    }
+
+    @Override
+    public void reset() {
+        taskTable.histograms().reset();
+    }
+}
@@ -0,0 +1,30 @@
+package sim.metrics;
+
+import java.util.List;
+
+/**
+ * The JMX view of a Conductor's {@link TaskTable}, e.g. for JConsole or VisualVM. Registered under
+ * {@code sim:type=Conductor,name=TaskLifecycle} and a per-Conductor id.
+ */
+public interface LifecycleMetricsMXBean {
+
+    /**
+     * @return every lifecycle histogram that has recorded anything
+     */
+    List<HistogramSnapshot> getHistograms();
+
+    /**
+     * @return the histograms as a table
+     */
+    String getReport();
+
+    /**
+     * @return how many tasks are in flight at the Conductor
+     */
+    int getTasksInFlight();
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,21 @@
+package sim.metrics;
+
+import sim.task.TASK_TYPE;
+
+/**
+ * The timestamps of a single task as it moves through the Conductor, kept in the {@link TaskTable} while the task is in
+ * flight. Every stage is stamped by the one thread that handles the task at that point, and handing the task from one
+ * thread to the next publishes the earlier stamps.
+ */
+class TaskRecord {
+
+    final long receivedAt;
+    volatile long assignedAt;
+    volatile long sentAt;
+    volatile long completedAt;
+    volatile TASK_TYPE workerType;
+
+    TaskRecord(long receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+}
@@ -0,0 +1,203 @@
+package sim.metrics;
+
+import sim.task.TASK_TYPE;
+import sim.task.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The table of tasks in flight at the Conductor. Each handler stamps the tasks passing through it with the time they
+ * reach a {@link LIFECYCLE_STAGE} boundary, and once a task is returned to its client, the time spent in every stage is
+ * recorded in the table's {@link LifecycleHistograms}.
+ * <p>
+ * Tasks that never make it back, for example because their client disconnected, stay in the table until they are
+ * {@link #forget(int) forgotten}.
+ * <p>
+ * A task that is received again while it has not been completed yet, because its client reattached and sent it once
+ * more, is left out: the table is what tells the Conductor that it already holds the task. A task that has been
+ * completed, but whose completion may have been lost along with the client's connection, is received afresh.
+ * <p>
+ * Tasks are also indexed per client, so that counting or forgetting the tasks of one client, which happens whenever a
+ * client connects, reattaches or goes away, only looks at that client's tasks.
+ */
+public class TaskTable {
+
+    private final Map<Task, TaskRecord> inFlight = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Task>> byClient = new ConcurrentHashMap<>();
+    private final LifecycleHistograms histograms = new LifecycleHistograms();
+    private final LongSupplier clock;
+
+    /**
+     * Creates a table that stamps tasks with {@link System#nanoTime()}.
+     */
+    public TaskTable() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock the monotonic clock, in nanoseconds, that tasks are stamped with
+     */
+    public TaskTable(LongSupplier nanoClock) {
+        this.clock = nanoClock;
+    }
+
+    /**
+     * @param task a task the Conductor has just received from its client
+     * @return false if the task is already in flight and has not been completed yet, true otherwise
+     */
+    public boolean received(Task task) {
+        return receive(task, clock.getAsLong());
+    }
+
+    /**
+     * @param tasks tasks the Conductor has just received from their client
+     * @return the tasks that were not in flight yet, in order
+     */
+    public List<Task> received(List<Task> tasks) {
+        long now = clock.getAsLong();
+        List<Task> fresh = null;
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            if (receive(task, now)) {
+                if (fresh != null)
+                    fresh.add(task);
+                continue;
+            }
+
+            if (fresh == null)
+                fresh = new ArrayList<>(tasks.subList(0, i));
+        }
+
+        return fresh == null ? tasks : fresh;
+    }
+
+    private boolean receive(Task task, long now) {
+        TaskRecord record = new TaskRecord(now);
+        TaskRecord previous = inFlight.putIfAbsent(task, record);
+        if (previous == null) {
+            tasksOf(task.clientID()).add(task);
+            return true;
+        }
+
+        return previous.completedAt != 0 && inFlight.replace(task, previous, record);
+    }
+
+    private Set<Task> tasksOf(int clientID) {
+        return byClient.computeIfAbsent(clientID, id -> ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * @param unit tasks that have just been assigned, as one work unit, to a worker
+     * @param workerType the type of the worker
+     */
+    public void assigned(List<Task> unit, TASK_TYPE workerType) {
+        long now = clock.getAsLong();
+        for (Task task : unit) {
+            TaskRecord record = inFlight.get(task);
+            if (record != null) {
+                record.workerType = workerType;
+                record.assignedAt = now;
+                record.sentAt = 0;
+            }
+        }
+    }
+
+    /**
+     * @param unit tasks that have just been written to their worker's connection. Speculative copies of tasks that have
+     *             already been sent keep the time of the original
+     */
+    public void sent(List<Task> unit) {
+        long now = clock.getAsLong();
+        for (Task task : unit) {
+            TaskRecord record = inFlight.get(task);
+            if (record != null && record.sentAt == 0)
+                record.sentAt = now;
+        }
+    }
+
+    /**
+     * @param unit tasks whose completion has just been received from their worker
+     */
+    public void completed(List<Task> unit) {
+        long now = clock.getAsLong();
+        for (Task task : unit) {
+            TaskRecord record = inFlight.get(task);
+            if (record != null)
+                record.completedAt = now;
+        }
+    }
+
+    /**
+     * Removes tasks that have just been written back to their client and records how long each of their stages took.
+     * @param tasks the returned tasks
+     */
+    public void returned(List<Task> tasks) {
+        long now = clock.getAsLong();
+        Set<Task> clientTasks = null;
+        int clientID = 0;
+        for (Task task : tasks) {
+            TaskRecord record = inFlight.remove(task);
+            if (record == null)
+                continue;
+
+            histograms.record(task.type(), record, now);
+            if (clientTasks == null || task.clientID() != clientID) {
+                clientID = task.clientID();
+                clientTasks = byClient.get(clientID);
+            }
+            if (clientTasks != null)
+                clientTasks.remove(task);
+        }
+    }
+
+    /**
+     * Removes the tasks of a client that has gone away.
+     * @param clientID the ID of the client
+     */
+    public void forget(int clientID) {
+        Set<Task> clientTasks = byClient.remove(clientID);
+        if (clientTasks == null)
+            return;
+
+        for (Task task : clientTasks)
+            inFlight.remove(task);
+    }
+
+    /**
+     * @param clientID the ID of a client
+     * @return how many tasks of the client are in flight and have not been completed yet
+     */
+    public int pending(int clientID) {
+        Set<Task> clientTasks = byClient.get(clientID);
+        if (clientTasks == null)
+            return 0;
+
+        int pending = 0;
+        for (Task task : clientTasks) {
+            TaskRecord record = inFlight.get(task);
+            if (record != null && record.completedAt == 0)
+                pending++;
+        }
+
+        return pending;
+    }
+
+    /**
+     * @return how many tasks are in flight
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return the histograms of every task returned so far
+     */
+    public LifecycleHistograms histograms() {
+        return histograms;
+    }
+}
@@ -3,6 +3,7 @@ package sim.task;
 import java.io.Serializable;
 
 import sim.client.Client;
+import sim.comms.wire.Message;
 import sim.conductor.Conductor;
 import sim.worker.Worker;
 
@@ -17,7 +18,7 @@ import sim.worker.Worker;
  * @param taskID the (should be unique) taskID to assign the Task
  * @param type the type of Task
  */
-public record Task(int clientID, int taskID, TASK_TYPE type) implements Serializable {
+public record Task(int clientID, int taskID, TASK_TYPE type) implements Message, Serializable {
 
     @Override
     public String toString() {
@@ -1,14 +1,30 @@
 package sim.worker;
 
+import sim.comms.Connection;
+import sim.comms.Sender;
+import sim.comms.SocketConnection;
+import sim.comms.wire.Handshake;
+import sim.comms.wire.Message;
+import sim.comms.wire.MessageReader;
+import sim.comms.wire.MessageWriter;
+import sim.comms.wire.TaskBatch;
+import sim.comms.wire.WireCodecs;
+import sim.comms.wire.WorkRequest;
+import sim.concurrent.Threads;
 import sim.conductor.Conductor;
+import sim.config.Config;
+import sim.log.Log;
 import sim.task.TASK_TYPE;
 import sim.task.Task;
 import sim.component.ComponentID;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static sim.component.COMPONENT_TYPE.WORKER;
 
@@ -20,71 +36,156 @@ import static sim.component.COMPONENT_TYPE.WORKER;
  * connection is established, the Worker will be able to perform tasks for the Conductor. The amount of time to perform
  * any particular task is dependent on the Worker's worker type. If the worker type matches the particular task's
  * {@link TASK_TYPE}, then the Worker will take 2 seconds to complete the task. Otherwise, the Worker will take 10 seconds
- * to do so.
+ * to do so. Both durations can be changed through {@link Config#sameTypeMillis()} and {@link Config#crossTypeMillis()}.
  * <p>
- * To use this class, start it from the command line by passing in a host name, port number, and the worker type.
+ * A Worker executes up to {@code slots} tasks at once on an internal pool and reports each completion as soon as it is
+ * done, so completions may reach the Conductor out of order. The amount of slots is announced in the Worker's handshake.
+ * <p>
+ * By default the Conductor pushes a task to the Worker whenever one of its slots is free. With a prefetch depth above 0
+ * the Worker pulls instead: it sends {@link WorkRequest}s so that, while its slots are busy, up to {@code prefetch} more
+ * tasks are already buffered locally. The next task can then start the moment a slot frees up, instead of after a round
+ * trip to the Conductor.
+ * <p>
+ * To use this class, start it from the command line by passing in a host name, port number, and the worker type. With
+ * {@code sim.reconnectMillis} set, it connects again whenever it loses the Conductor, e.g. to a restarted one.
  */
 public class Worker {
 
-    private final Socket myWorkerSocket;
+    private final Connection connection;
     private final ComponentID componentID;
     private final TASK_TYPE workerType;
-    private ObjectOutputStream objOut;
+    private final MessageWriter out;
+    private final int slots;
+    private final int prefetch;
+    private final BlockingQueue<List<Task>> localTasks = new LinkedBlockingQueue<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
 
     /**
      * @param workerSocket the socket that the Worker will use to send and receive tasks from the Conductor
      * @param workerType the type of Worker
+     * @throws IOException if the socket's output stream cannot be opened
      */
-    public Worker(Socket workerSocket, TASK_TYPE workerType) {
-        this.myWorkerSocket = workerSocket;
-        this.workerType = workerType;
-        componentID = new ComponentID(WORKER, new Random().nextInt());
-        initializeStreams();
+    public Worker(Socket workerSocket, TASK_TYPE workerType) throws IOException {
+        this(new SocketConnection(workerSocket, WireCodecs.defaultCodec()), workerType);
     }
 
     /**
-     * This method is internally used by the Worker. It uses the worker socket used by this worker instance to
-     * instantiate an output stream to communicate with the Conductor.
+     * @param connection the connection that the Worker will use to send and receive tasks from the Conductor
+     * @param workerType the type of Worker
      */
-    private void initializeStreams() {
-        try {
-            objOut = new ObjectOutputStream(myWorkerSocket.getOutputStream());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    public Worker(Connection connection, TASK_TYPE workerType) {
+        this(connection, workerType, Config.slots(), Config.prefetch());
     }
 
     /**
-     * Performs all of the Task work. Reads every task sent by the Conductor, performs the task (causing the Worker to
-     * sleep for a specified amount of time), and then writes the completed task back to the Conductor.
+     * @param connection the connection that the Worker will use to send and receive tasks from the Conductor
+     * @param workerType the type of Worker
+     * @param slots how many tasks to execute concurrently
+     * @param prefetch how many tasks to keep buffered beyond the ones being executed; 0 to have tasks pushed instead
+     */
+    public Worker(Connection connection, TASK_TYPE workerType, int slots, int prefetch) {
+        if (slots < 1)
+            throw new IllegalArgumentException("A Worker needs at least one slot");
+
+        this.connection = connection;
+        this.workerType = workerType;
+        this.slots = slots;
+        this.prefetch = prefetch;
+        this.out = connection.writer();
+        componentID = new ComponentID(WORKER, new Random().nextInt());
+    }
+
+    /**
+     * Performs all of the Task work. Reads every task sent by the Conductor into a local buffer, from which one
+     * {@link SlotExecutor} per slot performs the tasks (causing it to sleep for a specified amount of time) and writes
+     * each completed task back to the Conductor. Returns once the Conductor disconnects.
      */
     public void begin() {
 
         notifyConductor();
-        try(ObjectInputStream objIn = new ObjectInputStream(myWorkerSocket.getInputStream()))
+        ExecutorService slotPool = Threads.newFixedThreadPool(slots, "worker-" + componentID.refID() + "-slot");
+        for (int i = 0; i < slots; i++)
+            slotPool.execute(new SlotExecutor());
+
+        try(connection)
         {
-            Task task;
-            while ((task = (Task) objIn.readObject()) != null) {
+            // Every completion asks for one more task, keeping all slots busy and up to 'prefetch' tasks buffered
+            if (prefetch > 0)
+                out.send(new WorkRequest(slots + prefetch));
 
-                if (task.type() == workerType){
-                    System.out.printf("WORKER(%s) %d: Received task of type %s. This task should take %d seconds\n",
-                            workerType, componentID.refID(), task.type(), 2);
-                    Thread.sleep(2000);
-                }
+            MessageReader in = connection.reader();
+            while (true) {
+                Message message = in.read();
+                if (message instanceof TaskBatch unit)
+                    localTasks.add(unit.tasks());
+
+                else localTasks.add(List.of((Task) message));
+            }
+        }
+
+        catch (IOException e) {
+            Log.info("WORKER(%s) %d: Conductor has disconnected...", workerType, componentID.refID());
+        }
 
-                else {
-                    System.out.printf("WORKER(%s) %d: Received task of type %s. This task should take %d seconds\n",
-                            workerType, componentID.refID(), task.type(), 10);
-                    Thread.sleep(10000);
+        finally {
+            slotPool.shutdownNow();
+        }
+    }
+
+    /**
+     * A SlotExecutor occupies one of the Worker's slots. It keeps taking tasks from the Worker's local buffer, performs
+     * them, and sends each completed task back to the Conductor, along with a request for another task in pull mode.
+     * A work unit of several tasks is performed one task after the other and sent back as a single {@link TaskBatch}.
+     */
+    private class SlotExecutor implements Runnable, Sender {
+
+        @Override
+        public void run() {
+            send();
+        }
+
+        @Override
+        public void send() {
+            try {
+                while (true) {
+                    List<Task> unit = localTasks.take();
+                    for (Task task : unit) {
+                        long millis = Config.taskMillis(task.type(), workerType);
+                        Log.trace("WORKER(%s) %d: Received task of type %s. This task should take %d milliseconds",
+                                workerType, componentID.refID(), task.type(), millis);
+                        Thread.sleep(millis);
+
+                        Log.trace("WORKER(%s) %d: Completed task %s", workerType, componentID.refID(), task);
+                    }
+
+                    complete(unit);
                 }
+            }
+
+            catch (IOException e) {
+                e.printStackTrace();
+            }
 
-                System.out.printf("WORKER(%s) %d: Completed task %s\n", workerType, componentID.refID(), task);
-                objOut.writeObject(task);
+            catch (InterruptedException e) {
+                // The Worker is shutting down
             }
         }
+    }
 
-        catch (InterruptedException | IOException | ClassNotFoundException e) {
-            e.printStackTrace();
+    /**
+     * Writes a completed task or work unit back to the Conductor. Slots complete their tasks concurrently, so writes are
+     * serialized.
+     */
+    private void complete(List<Task> unit) throws IOException {
+        writeLock.lock();
+        try {
+            out.write(TaskBatch.of(unit));
+            if (prefetch > 0)
+                out.write(new WorkRequest(1));
+
+            out.flush();
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -94,12 +195,11 @@ public class Worker {
      */
     private void notifyConductor() {
         try {
-            objOut.writeObject(componentID);
-            objOut.writeObject(workerType);
+            out.send(Handshake.worker(componentID, workerType, slots, prefetch));
         }
         catch (IOException e) {
             e.printStackTrace();
-            System.out.println("Worker: Could not send component ID to conductor");
+            Log.warn("WORKER(%s) %d: Could not send component ID to conductor", workerType, componentID.refID());
         }
     }
 
@@ -117,7 +217,7 @@ public class Worker {
         return workerType;
     }
 
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
 
         if (args.length != 3) {
             System.err.println("Usage: java Client <hostName> <portNumber> <worker type>");
@@ -126,12 +226,31 @@ public class Worker {
 
         String hostName = args[0];
         int portNumber = Integer.parseInt(args[1]);
+        TASK_TYPE workerType;
         try{
-            TASK_TYPE workerType = TASK_TYPE.valueOf(args[2]);
-            Worker worker = new Worker(new Socket(hostName, portNumber), workerType);
-            worker.begin();
+            workerType = TASK_TYPE.valueOf(args[2]);
         } catch (IllegalArgumentException e) {
             System.err.println("Usage: last argument <worker type> must be A or B");
+            return;
+        }
+
+        // A Worker holds no state worth keeping, so it reconnects as a new one; its lost tasks are dispatched again
+        long reconnectMillis = Config.reconnectMillis();
+        while (true) {
+            try {
+                Worker worker = new Worker(new Socket(hostName, portNumber), workerType);
+                Threads.start("worker", worker::begin).join();
+            } catch (IOException e) {
+                if (reconnectMillis <= 0)
+                    throw e;
+
+                Log.warn("WORKER(%s): Could not reach the Conductor (%s), trying again...", workerType, e);
+            }
+
+            if (reconnectMillis <= 0)
+                return;
+
+            Thread.sleep(reconnectMillis);
         }
     }
 }